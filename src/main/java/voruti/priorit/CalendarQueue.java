@@ -0,0 +1,565 @@
+package voruti.priorit;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Priority queue of {@link Item items} in the order of
+ * {@link Item#compareTo(Item)}, specialized for its small key space: items are
+ * kept in buckets per (done, {@link Priority}, ETA day), and a bucket holds its
+ * items ordered by uName. Because the days of all items shrink equally when the
+ * day rolls over, the buckets store absolute days and {@link #advanceTo(int)}
+ * is O(1).
+ * <p>
+ * Inserting, updating and removing locates the bucket in O(1) (for ETAs inside
+ * a window of {@value #WINDOW_DAYS} days; others go to a sorted overflow map)
+ * and only orders by uName inside the small bucket. {@link #peek()} compares
+ * the first buckets of the {@link Priority priorities}.
+ * <p>
+ * {@link #toSnapshotList()} and {@link #peekSnapshot()} hand out one
+ * {@link ItemSnapshot} per queued {@link Item}, created on first request and
+ * shared by all later readers until the {@link Item} is replaced.
+ *
+ * @author voruti
+ */
+public class CalendarQueue {
+
+	private static final String CLASS_NAME = CalendarQueue.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Number of days covered by the bucket array of each {@link DayBuckets}.
+	 */
+	static final int WINDOW_DAYS = 1024;
+
+	/**
+	 * Number of days before the first day that are still covered by the bucket
+	 * array (for overdue items).
+	 */
+	private static final int OVERDUE_DAYS = 128;
+
+	/**
+	 * The bucket arrays; index {@code [done ? 1 : 0][priority.ordinal()]}.
+	 */
+	private final DayBuckets[][] buckets;
+
+	/**
+	 * Where every item is stored; needed to find the old bucket on updates.
+	 */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * The current day as epoch day.
+	 */
+	private int today;
+
+	/**
+	 * Estimated heap memory of the snapshots of the {@link #entries} in bytes.
+	 */
+	private long snapshotMemoryUsage = 0;
+
+	/**
+	 * Creates an empty queue for the current day.
+	 */
+	public CalendarQueue() {
+		this((int) LocalDate.now()
+				.toEpochDay());
+	}
+
+	/**
+	 * Creates an empty queue.
+	 *
+	 * @param today the current day as epoch day
+	 */
+	public CalendarQueue(int today) {
+		this.today = today;
+		this.buckets = new DayBuckets[2][Priority.values().length];
+		for (DayBuckets[] doneBuckets : buckets)
+			for (int p = 0; p < doneBuckets.length; p++)
+				doneBuckets[p] = new DayBuckets(today - OVERDUE_DAYS);
+	}
+
+	/**
+	 * @return the current day as epoch day
+	 */
+	public synchronized int getToday() {
+		return today;
+	}
+
+	/**
+	 * Moves the queue to another day. All values change equally per
+	 * {@link Priority}, so no item has to be moved.
+	 *
+	 * @param today the new current day as epoch day
+	 */
+	public synchronized void advanceTo(int today) {
+		LOGGER.finer(() -> String.format("Advancing from day %d to today=%d", this.today, today));
+		this.today = today;
+	}
+
+	/**
+	 * @return the number of items
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param uName the uName of the item
+	 * @return {@code true}, if an item with {@code uName} is queued
+	 */
+	public synchronized boolean contains(String uName) {
+		return entries.containsKey(uName);
+	}
+
+	/**
+	 * @param uName the uName of the item
+	 * @return the queued {@link Item} with {@code uName}; {@code null} if there is
+	 *         none
+	 */
+	public synchronized Item get(String uName) {
+		Entry entry = entries.get(uName);
+		return entry == null ? null : entry.item;
+	}
+
+	/**
+	 * Adds {@link Item item} or replaces the queued item with the same uName.
+	 * The fields used for ordering are read now; later changes to the
+	 * {@link Item} need another call.
+	 *
+	 * @param item the {@link Item} to add or update
+	 */
+	public synchronized void put(Item item) {
+		remove(item.getuName());
+
+		Entry entry = new Entry(item, toEpochDay(item));
+		entry.dayBuckets()
+				.add(entry);
+		entries.put(item.getuName(), entry);
+	}
+
+	/**
+	 * Replaces the queued item with the uName of {@link Item item} by
+	 * {@code item}, keeping its position and snapshot. {@code item} has to have
+	 * the same fields (e.g. be the completely loaded version of a partially
+	 * loaded item).
+	 *
+	 * @param item the {@link Item} to queue instead
+	 * @return the replaced {@link Item}; {@code null} if there is none (then
+	 *         {@code item} is not queued)
+	 */
+	public synchronized Item replace(Item item) {
+		Entry entry = entries.get(item.getuName());
+		if (entry == null)
+			return null;
+
+		Item replacedItem = entry.item;
+		entry.item = item;
+		return replacedItem;
+	}
+
+	/**
+	 * Removes the item with {@code uName}.
+	 *
+	 * @param uName the uName of the item
+	 * @return the removed {@link Item}; {@code null} if it was not queued
+	 */
+	public synchronized Item remove(String uName) {
+		Entry entry = entries.remove(uName);
+		if (entry == null)
+			return null;
+
+		entry.queued = false;
+		snapshotMemoryUsage -= entry.snapshotMemoryUsage;
+		entry.dayBuckets()
+				.remove(entry);
+		return entry.item;
+	}
+
+	/**
+	 * @return the most important {@link Item}; {@code null} if the queue is empty
+	 */
+	public synchronized Item peek() {
+		Entry entry = peekEntry();
+		return entry == null ? null : entry.item;
+	}
+
+	/**
+	 * @return the {@link ItemSnapshot} of the most important {@link Item};
+	 *         {@code null} if the queue is empty
+	 * @throws UncheckedIOException if the fields of a partially loaded
+	 *                              {@link Item} can not be loaded
+	 */
+	public ItemSnapshot peekSnapshot() {
+		Entry entry;
+		synchronized (this) {
+			entry = peekEntry();
+		}
+		return entry == null ? null : getSnapshot(entry);
+	}
+
+	private Entry peekEntry() {
+		for (DayBuckets[] doneBuckets : buckets) {
+			Entry best = null;
+			long bestValue = 0;
+			// start with the lowest priority value, so equal values keep it (like compareTo)
+			for (int p = doneBuckets.length - 1; p >= 0; p--) {
+				Entry first = doneBuckets[p].first();
+				if (first != null) {
+					long value = first.value(today);
+					if (best == null || value < bestValue) {
+						best = first;
+						bestValue = value;
+					}
+				}
+			}
+			if (best != null)
+				return best;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes and returns the most important {@link Item}.
+	 *
+	 * @return the most important {@link Item}; {@code null} if the queue is empty
+	 */
+	public synchronized Item poll() {
+		Item item = peek();
+		if (item != null)
+			remove(item.getuName());
+		return item;
+	}
+
+	/**
+	 * @return all {@link Item items} in the order of {@link Item#compareTo(Item)}
+	 */
+	public synchronized List<Item> toList() {
+		return toList(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the {@code limit} most important {@link Item items}. Only the first
+	 * {@code limit} items of each {@link Priority} are looked at.
+	 *
+	 * @param limit the maximum number of {@link Item items}
+	 * @return the first {@link Item items} in the order of
+	 *         {@link Item#compareTo(Item)}
+	 */
+	public synchronized List<Item> toList(int limit) {
+		List<Entry> sorted = toEntryList(limit);
+		List<Item> items = new ArrayList<>(sorted.size());
+		for (Entry entry : sorted)
+			items.add(entry.item);
+		return items;
+	}
+
+	/**
+	 * @return the {@link ItemSnapshot snapshots} of all {@link Item items} in the
+	 *         order of {@link Item#compareTo(Item)}
+	 * @throws UncheckedIOException if the fields of a partially loaded
+	 *                              {@link Item} can not be loaded
+	 */
+	public List<ItemSnapshot> toSnapshotList() {
+		List<Entry> sorted;
+		synchronized (this) {
+			sorted = toEntryList(Integer.MAX_VALUE);
+		}
+		List<ItemSnapshot> snapshots = new ArrayList<>(sorted.size());
+		for (Entry entry : sorted)
+			snapshots.add(getSnapshot(entry));
+		return snapshots;
+	}
+
+	/**
+	 * @return the estimated heap memory of the snapshots handed out for the
+	 *         queued {@link Item items} in bytes
+	 */
+	public synchronized long getSnapshotMemoryUsage() {
+		return snapshotMemoryUsage;
+	}
+
+	/**
+	 * Returns the snapshot of {@link Entry entry}, creating it on first request.
+	 * Not synchronized while creating, as partially loaded {@link Item items}
+	 * read their file. Nothing is cached if that fails.
+	 *
+	 * @throws UncheckedIOException if the fields of a partially loaded
+	 *                              {@link Item} can not be loaded
+	 */
+	private ItemSnapshot getSnapshot(Entry entry) {
+		ItemSnapshot snapshot = entry.snapshot;
+		if (snapshot != null)
+			return snapshot;
+
+		// a copy, so the queued Item stays partially loaded:
+		Item complete = entry.item.copy();
+		snapshot = complete.toSnapshot(); // (throws instead of returning empty fields)
+		synchronized (this) {
+			if (entry.snapshot != null)
+				return entry.snapshot;
+			if (entry.queued) {
+				entry.snapshot = snapshot;
+				entry.snapshotMemoryUsage = Item.estimateMemoryUsage(complete);
+				snapshotMemoryUsage += entry.snapshotMemoryUsage;
+			}
+		}
+		return snapshot;
+	}
+
+	private List<Entry> toEntryList(int limit) {
+		List<Entry> items = new ArrayList<>(Math.min(limit, entries.size()));
+		for (DayBuckets[] doneBuckets : buckets) {
+			if (items.size() >= limit)
+				break;
+			// merge the already sorted priorities:
+			PriorityQueue<Cursor> queue = new PriorityQueue<>(doneBuckets.length);
+			for (DayBuckets dayBuckets : doneBuckets) {
+				List<Entry> sorted = dayBuckets.toList(limit - items.size());
+				if (!sorted.isEmpty())
+					queue.add(new Cursor(sorted, today));
+			}
+			while (!queue.isEmpty() && items.size() < limit) {
+				Cursor cursor = queue.poll();
+				items.add(cursor.current());
+				if (cursor.next())
+					queue.add(cursor);
+			}
+		}
+		return items;
+	}
+
+	private DayBuckets getDayBuckets(boolean done, Priority priority) {
+		return buckets[done ? 1 : 0][priority.ordinal()];
+	}
+
+	/**
+	 * @param item the {@link Item}
+	 * @return the ETA of {@link Item item} as epoch day; in the same time zone
+	 *         as {@link Item#daysLeft(java.util.Date)}
+	 */
+	static int toEpochDay(Item item) {
+		return (int) item.getEtaDate()
+				.toInstant()
+				.atZone(ZoneId.systemDefault())
+				.toLocalDate()
+				.toEpochDay();
+	}
+
+	/**
+	 * A queued {@link Item} with its ordering fields at the time it was queued.
+	 */
+	private final class Entry {
+
+		/**
+		 * Only replaced by an {@link Item} with the same fields (see
+		 * {@link CalendarQueue#replace(Item)}).
+		 */
+		private volatile Item item;
+		private final String uName;
+		private final int etaDay;
+		private final Priority priority;
+		private final boolean done;
+
+		/**
+		 * {@code false} once removed from the queue.
+		 */
+		private boolean queued = true;
+
+		/**
+		 * Created on first request by {@link CalendarQueue#getSnapshot(Entry)}.
+		 */
+		private volatile ItemSnapshot snapshot;
+
+		private long snapshotMemoryUsage = 0;
+
+		private Entry(Item item, int etaDay) {
+			this.item = item;
+			this.uName = item.getuName();
+			this.etaDay = etaDay;
+			this.priority = item.getPriority();
+			this.done = item.isDone();
+		}
+
+		private DayBuckets dayBuckets() {
+			return getDayBuckets(done, priority);
+		}
+
+		/**
+		 * @return the value like {@link Item#calculateValue(Item)}
+		 */
+		private long value(int today) {
+			return (long) (etaDay - today) * priority.getValue();
+		}
+
+	}
+
+	/**
+	 * Position in the sorted {@link Entry entries} of one {@link Priority}.
+	 */
+	private static final class Cursor implements Comparable<Cursor> {
+
+		private final List<Entry> entries;
+		private final int today;
+		private int position = 0;
+
+		private Cursor(List<Entry> entries, int today) {
+			this.entries = entries;
+			this.today = today;
+		}
+
+		private Entry current() {
+			return entries.get(position);
+		}
+
+		private boolean next() {
+			return ++position < entries.size();
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			Entry a = current();
+			Entry b = other.current();
+			int valueCompare = Long.compare(a.value(today), b.value(today));
+			if (valueCompare != 0)
+				return valueCompare;
+			int prioCompare = a.priority.getValue() - b.priority.getValue();
+			if (prioCompare != 0)
+				return prioCompare;
+			return a.uName.compareTo(b.uName);
+		}
+
+	}
+
+	/**
+	 * The buckets of one (done, {@link Priority}) combination: an array of
+	 * {@value CalendarQueue#WINDOW_DAYS} day buckets starting at
+	 * {@link #baseDay}, plus a sorted map for days outside of it. The array is
+	 * only allocated for the first item inside of it, as most combinations stay
+	 * empty.
+	 */
+	private static final class DayBuckets {
+
+		private final int baseDay;
+
+		/**
+		 * {@code null} until the first bucket is created.
+		 */
+		private List<TreeMap<String, Entry>> window = null;
+
+		/**
+		 * Index of the first non-empty bucket of {@link #window} (or
+		 * {@link CalendarQueue#WINDOW_DAYS}, if all are empty).
+		 */
+		private int firstIndex = WINDOW_DAYS;
+
+		private final TreeMap<Integer, TreeMap<String, Entry>> overflow = new TreeMap<>();
+
+		private DayBuckets(int baseDay) {
+			this.baseDay = baseDay;
+		}
+
+		private void add(Entry entry) {
+			getBucket(entry.etaDay, true).put(entry.uName, entry);
+		}
+
+		private void remove(Entry entry) {
+			TreeMap<String, Entry> bucket = getBucket(entry.etaDay, false);
+			if (bucket == null || bucket.remove(entry.uName) == null || !bucket.isEmpty())
+				return;
+
+			int index = entry.etaDay - baseDay;
+			if (index >= 0 && index < WINDOW_DAYS) {
+				window.set(index, null);
+				if (index == firstIndex)
+					while (firstIndex < WINDOW_DAYS && window.get(firstIndex) == null)
+						firstIndex++;
+			} else {
+				overflow.remove(entry.etaDay);
+			}
+		}
+
+		private Entry first() {
+			Map.Entry<Integer, TreeMap<String, Entry>> before = overflow.firstEntry();
+			if (before != null && before.getKey() < baseDay)
+				return before.getValue()
+						.firstEntry()
+						.getValue();
+			if (firstIndex < WINDOW_DAYS)
+				return window.get(firstIndex)
+						.firstEntry()
+						.getValue();
+			if (before != null)
+				return before.getValue()
+						.firstEntry()
+						.getValue();
+			return null;
+		}
+
+		/**
+		 * @param limit the maximum number of entries
+		 * @return the first {@code limit} entries in order
+		 */
+		private List<Entry> toList(int limit) {
+			List<Entry> list = new ArrayList<>();
+			for (TreeMap<String, Entry> bucket : overflow.headMap(baseDay)
+					.values())
+				if (!addAll(list, bucket, limit))
+					return list;
+			for (int i = firstIndex; i < WINDOW_DAYS; i++)
+				if (window.get(i) != null && !addAll(list, window.get(i), limit))
+					return list;
+			for (TreeMap<String, Entry> bucket : overflow.tailMap(baseDay)
+					.values())
+				if (!addAll(list, bucket, limit))
+					return list;
+			return list;
+		}
+
+		/**
+		 * @return {@code false}, if {@code limit} is reached
+		 */
+		private static boolean addAll(List<Entry> list, TreeMap<String, Entry> bucket, int limit) {
+			for (Entry entry : bucket.values()) {
+				if (list.size() >= limit)
+					return false;
+				list.add(entry);
+			}
+			return list.size() < limit;
+		}
+
+		private TreeMap<String, Entry> getBucket(int day, boolean create) {
+			int index = day - baseDay;
+			if (index >= 0 && index < WINDOW_DAYS) {
+				if (window == null) {
+					if (!create)
+						return null;
+					window = new ArrayList<>(Collections.nCopies(WINDOW_DAYS, null));
+				}
+				if (window.get(index) == null && create) {
+					window.set(index, new TreeMap<>());
+					firstIndex = Math.min(firstIndex, index);
+				}
+				return window.get(index);
+			}
+
+			TreeMap<String, Entry> bucket = overflow.get(day);
+			if (bucket == null && create) {
+				bucket = new TreeMap<>();
+				overflow.put(day, bucket);
+			}
+			return bucket;
+		}
+
+	}
+
+}
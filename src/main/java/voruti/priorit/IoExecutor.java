@@ -0,0 +1,253 @@
+package voruti.priorit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs file operations (one per file) concurrently, at most {@link #getLimit()}
+ * at a time. Uses one virtual thread per operation if the JVM supports it (Java
+ * 21+; looked up reflectively, since the project targets Java 8), otherwise a
+ * pool of {@link #getLimit()} daemon threads; or an {@link ExecutorService}
+ * shared with others (e.g. by a {@link PrioritManagerRegistry}). A limit of
+ * {@code 1} runs all operations sequentially on the calling thread, as do
+ * calls from inside an operation (so nested calls can not wait for each
+ * other).
+ *
+ * @author voruti
+ */
+public final class IoExecutor {
+
+	private static final String CLASS_NAME = IoExecutor.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * {@code Executors.newVirtualThreadPerTaskExecutor()}; {@code null} if not
+	 * available.
+	 */
+	private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+	private final int limit;
+
+	/**
+	 * {@code null} if {@link #limit} is {@code 1}.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * {@code true}, if {@link #executor} was created by this instance and has to
+	 * be shut down by {@link #shutdown()}.
+	 */
+	private final boolean ownExecutor;
+
+	/**
+	 * The {@link IoExecutor} whose operation the current thread runs.
+	 */
+	private static final ThreadLocal<IoExecutor> RUNNING = new ThreadLocal<>();
+
+	/**
+	 * Bounds the number of running (and queued) operations to {@link #limit}.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * An operation on one element.
+	 *
+	 * @param <T> the type of the elements
+	 */
+	interface IoTask<T> {
+
+		void run(T element) throws IOException;
+
+	}
+
+	/**
+	 * @param limit the maximum number of concurrent operations
+	 */
+	IoExecutor(int limit) {
+		this(limit, true);
+	}
+
+	/**
+	 * @param limit             the maximum number of concurrent operations
+	 * @param useVirtualThreads {@code false} to use a thread pool even if virtual
+	 *                          threads are supported
+	 */
+	IoExecutor(int limit, boolean useVirtualThreads) {
+		if (limit < 1)
+			throw new IllegalArgumentException(String.format("limit=%d is less than 1", limit));
+		this.limit = limit;
+		this.permits = new Semaphore(limit);
+		this.ownExecutor = true;
+		if (limit == 1)
+			this.executor = null;
+		else if (useVirtualThreads && isVirtualThreadsSupported())
+			this.executor = newVirtualThreadExecutor();
+		else
+			// (the permits bound the queue; rejected operations run on the caller)
+			this.executor = newThreadPool(limit, "priorit-io", new LinkedBlockingQueue<>(), true,
+					new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * @param executor the shared {@link ExecutorService} to run the operations
+	 *                 on; not shut down by {@link #shutdown()}
+	 * @param limit    the maximum number of concurrent operations
+	 */
+	IoExecutor(ExecutorService executor, int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException(String.format("limit=%d is less than 1", limit));
+		this.limit = limit;
+		this.permits = new Semaphore(limit);
+		this.ownExecutor = false;
+		this.executor = limit == 1 ? null : executor;
+	}
+
+	private static Method findVirtualThreadExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			LOGGER.log(Level.FINE, "No virtual threads available");
+			return null;
+		}
+	}
+
+	/**
+	 * @return {@code true} if the JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	/**
+	 * Uses one virtual thread per task if the JVM supports it, otherwise a bounded
+	 * pool of {@code threads} daemon threads; if its queue is full, the
+	 * submitting thread runs the task itself (backpressure).
+	 *
+	 * @param threads       the number of threads of the pool
+	 * @param threadName    the name of the threads of the pool
+	 * @param queueCapacity the capacity of the queue of the pool
+	 * @return the new {@link ExecutorService}
+	 */
+	public static ExecutorService newExecutor(int threads, String threadName, int queueCapacity) {
+		if (isVirtualThreadsSupported())
+			return newVirtualThreadExecutor();
+		LOGGER.log(Level.FINE, "No virtual threads available, using threads={0}", threads);
+		return newThreadPool(threads, threadName, new ArrayBlockingQueue<>(queueCapacity), false,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Virtual threads can not be created", e);
+		}
+	}
+
+	private static ThreadPoolExecutor newThreadPool(int threads, String threadName, BlockingQueue<Runnable> queue,
+			boolean timeOut, RejectedExecutionHandler rejectedExecutionHandler) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, r -> {
+			Thread thread = new Thread(r, threadName);
+			thread.setDaemon(true);
+			return thread;
+		}, rejectedExecutionHandler);
+		// idle managers keep no threads:
+		pool.allowCoreThreadTimeOut(timeOut);
+		return pool;
+	}
+
+	/**
+	 * @return the maximum number of concurrent operations
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Shuts down the own threads (if any); already running operations are
+	 * finished. Further operations run on the calling thread.
+	 */
+	void shutdown() {
+		if (ownExecutor && executor != null)
+			executor.shutdown();
+	}
+
+	/**
+	 * Runs {@code task} for every element and waits until all are finished.
+	 * Calls from inside a {@code task} run sequentially.
+	 *
+	 * @param <T>      the type of the elements
+	 * @param elements the elements
+	 * @param task     the operation on one element
+	 * @throws IOException if {@code task} throws one (the first one is thrown,
+	 *                     after all tasks are finished) or the waiting is
+	 *                     interrupted
+	 */
+	<T> void forEach(Iterable<T> elements, IoTask<T> task) throws IOException {
+		if (executor == null || executor.isShutdown() || RUNNING.get() == this) {
+			for (T element : elements)
+				task.run(element);
+			return;
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Semaphore finished = new Semaphore(0);
+		int submitted = 0;
+		try {
+			for (T element : elements) {
+				permits.acquire();
+				Runnable operation = () -> {
+					IoExecutor outer = RUNNING.get();
+					RUNNING.set(this);
+					try {
+						task.run(element);
+					} catch (IOException | RuntimeException | Error e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						if (outer == null)
+							RUNNING.remove();
+						else
+							RUNNING.set(outer);
+						permits.release();
+						finished.release();
+					}
+				};
+				submitted++;
+				try {
+					executor.execute(operation);
+				} catch (RejectedExecutionException e) {
+					// e.g. shut down meanwhile:
+					operation.run();
+				}
+			}
+			finished.acquire(submitted);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for file operations");
+		}
+
+		Throwable throwable = failure.get();
+		if (throwable instanceof IOException)
+			throw (IOException) throwable;
+		if (throwable instanceof RuntimeException)
+			throw (RuntimeException) throwable;
+		if (throwable instanceof Error)
+			throw (Error) throwable;
+	}
+
+}
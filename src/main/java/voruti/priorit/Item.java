@@ -1,5 +1,7 @@
 package voruti.priorit;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
@@ -27,16 +29,53 @@ public class Item implements Comparable<Item> {
 	 * unique name
 	 */
 	private String uName;
-	private String title;
-	private String text;
-	private TreeSet<String> categories;
+	// the fields needed for the order (and the categories, which are needed for
+	// every ItemTable, and the textHash, which is needed to find unused blobs)
+	// are declared (and saved) first, so that ItemXmlReader can stop reading
+	// early:
 	private Date etaDate;
 	private Priority priority;
 	private boolean done;
+	private TreeSet<String> categories;
+	/**
+	 * Hash of the text in the {@link #textStore}; {@code null} if the text is
+	 * stored inline.
+	 */
+	private String textHash;
+	/**
+	 * {@code null} while a text stored in a {@link TextBlobStore} is not loaded
+	 * yet.
+	 */
+	private String text;
+	private String title;
+	/**
+	 * Where {@link #getText()} loads the text from; not saved.
+	 */
+	private transient TextBlobStore textStore;
+	/**
+	 * Loads {@link #title}, {@link #text}, {@link #textHash} and (if missing)
+	 * {@link #categories} of a partially loaded item (see
+	 * {@link ItemXmlReader}); {@code null} if they are loaded.
+	 */
+	private transient Hydrator hydrator;
+
+	/**
+	 * Loads the complete version of a partially loaded {@link Item}; shared by
+	 * the partially loaded {@link Item} and its copies.
+	 */
+	interface Hydrator {
+
+		/**
+		 * @return the complete {@link Item}; must not be modified
+		 * @throws IOException if it can not be loaded
+		 */
+		Item load() throws IOException;
+
+	}
 
 	/**
 	 * Initializes default item with empty or predefined values. The {@link #uName}
-	 * is the current time stamp and a random number.
+	 * is the time stamp of the ETA and a counter (see {@link UNameGenerator}).
 	 */
 	public Item() {
 		final String METHOD_NAME = "<init>";
@@ -48,13 +87,36 @@ public class Item implements Comparable<Item> {
 		this.categories.add("none");
 		long timestamp = System.currentTimeMillis() + 2592000000L; // 30 days
 		this.etaDate = new Date(timestamp);
-		this.uName = timestamp + "_" + (int) (Math.random() * 899 + 100);
+		this.uName = UNameGenerator.next(timestamp);
 		this.priority = Priority.VERY_LOW;
 		this.done = false;
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
 	}
 
+	/**
+	 * Initializes an item with the given values (no defaults are generated).
+	 */
+	Item(String uName, String title, String text, TreeSet<String> categories, Date etaDate, Priority priority,
+			boolean done) {
+		this.uName = uName;
+		this.title = title;
+		this.text = text;
+		this.categories = categories;
+		this.etaDate = etaDate;
+		this.priority = priority;
+		this.done = done;
+	}
+
+	/**
+	 * @return an immutable {@link ItemSnapshot} of the current state
+	 * @throws UncheckedIOException if the fields of a partially loaded item can
+	 *                              not be loaded
+	 */
+	public ItemSnapshot toSnapshot() {
+		return ItemSnapshot.of(this);
+	}
+
 	/**
 	 * @return the uName
 	 */
@@ -71,8 +133,11 @@ public class Item implements Comparable<Item> {
 
 	/**
 	 * @return the title
+	 * @throws UncheckedIOException if the title of a partially loaded item can
+	 *                              not be loaded
 	 */
 	public String getTitle() {
+		requireHydrated();
 		return title;
 	}
 
@@ -80,13 +145,25 @@ public class Item implements Comparable<Item> {
 	 * @param title the title to set
 	 */
 	public void setTitle(String title) {
+		hydrate();
 		this.title = title;
 	}
 
 	/**
+	 * Loads the text on the first call, if it is stored separately.
+	 * 
 	 * @return the text
+	 * @throws UncheckedIOException if the text of a partially loaded item or the
+	 *                              separately stored text can not be loaded
 	 */
 	public String getText() {
+		requireHydrated();
+		if (text == null && textHash != null && textStore != null)
+			try {
+				text = textStore.get(textHash);
+			} catch (IOException e) {
+				throw new UncheckedIOException(String.format("Text of item=%s can not be loaded", uName), e);
+			}
 		return text;
 	}
 
@@ -94,13 +171,72 @@ public class Item implements Comparable<Item> {
 	 * @param text the text to set
 	 */
 	public void setText(String text) {
+		hydrate();
 		this.text = text;
+		this.textHash = null;
+	}
+
+	/**
+	 * @return the hash of the separately stored text; {@code null} if it is
+	 *         stored inline
+	 */
+	String getTextHash() {
+		hydrate();
+		return textHash;
+	}
+
+	/**
+	 * Unlike {@link #getTextHash()}, a partially loaded {@link Item} stays
+	 * partially loaded (its hash is read with the ordering fields).
+	 * 
+	 * @return the hash of the separately stored text; {@code null} if it is
+	 *         stored inline
+	 */
+	String peekTextHash() {
+		return textHash;
+	}
+
+	/**
+	 * @param textStore a {@link TextBlobStore}
+	 * @return {@code true} if the (unchanged) text is stored in
+	 *         {@code textStore}
+	 */
+	boolean isTextStoredIn(TextBlobStore textStore) {
+		hydrate();
+		return textHash != null && this.textStore == textStore;
+	}
+
+	/**
+	 * @param textStore where {@link #getText()} loads a separately stored text
+	 *                  from
+	 */
+	void setTextStore(TextBlobStore textStore) {
+		this.textStore = textStore;
+	}
+
+	/**
+	 * @param textHash  the hash of the text in {@code textStore}
+	 * @param textStore the {@link TextBlobStore} containing the text
+	 * @return a copy of this {@link Item} referencing the separately stored text
+	 *         (which is not loaded)
+	 */
+	Item withStoredText(String textHash, TextBlobStore textStore) {
+		Item item = copy();
+		item.text = null;
+		item.textHash = textHash;
+		item.textStore = textStore;
+		return item;
 	}
 
 	/**
 	 * @return the categories
+	 * @throws UncheckedIOException if the categories of a partially loaded item
+	 *                              can not be loaded
 	 */
 	public List<String> getCategories() {
+		// (usually read with the ordering fields)
+		if (categories == null)
+			requireHydrated();
 		return new ArrayList<>(categories);
 	}
 
@@ -108,9 +244,75 @@ public class Item implements Comparable<Item> {
 	 * @param categories the categories to set
 	 */
 	public void setCategories(List<String> categories) {
+		hydrate();
 		this.categories = new TreeSet<>(categories);
 	}
 
+	/**
+	 * @param hydrator loads the fields besides the ones needed for the order
+	 *                 on first access
+	 */
+	void setHydrator(Hydrator hydrator) {
+		this.hydrator = hydrator;
+	}
+
+	/**
+	 * @param hydrator an {@link Hydrator}
+	 * @return {@code true} if this is a partially loaded {@link Item} whose other
+	 *         fields are loaded by {@code hydrator}
+	 */
+	boolean isLoadedBy(Hydrator hydrator) {
+		return this.hydrator != null && this.hydrator == hydrator;
+	}
+
+	/**
+	 * Loads the missing fields of a partially loaded {@link Item}. Fields set in
+	 * the meantime are kept.
+	 * 
+	 * @return {@code true} if all fields are loaded
+	 */
+	boolean hydrate() {
+		try {
+			loadFields();
+			return true;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Fields of item={0} can not be loaded", uName);
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Like {@link #hydrate()}, but fails instead of returning incomplete fields.
+	 * 
+	 * @throws UncheckedIOException if the missing fields can not be loaded
+	 */
+	private void requireHydrated() {
+		try {
+			loadFields();
+		} catch (IOException e) {
+			throw new UncheckedIOException(String.format("Fields of item=%s can not be loaded", uName), e);
+		}
+	}
+
+	private void loadFields() throws IOException {
+		Hydrator hydrator = this.hydrator;
+		if (hydrator == null)
+			return;
+
+		Item item = hydrator.load();
+		if (title == null)
+			title = item.title;
+		if (text == null && textHash == null) {
+			text = item.text;
+			textHash = item.textHash;
+			textStore = item.textStore;
+		}
+		if (categories == null)
+			categories = new TreeSet<>(item.categories);
+		this.hydrator = null;
+	}
+
 	/**
 	 * @return the etaDate
 	 */
@@ -177,14 +379,14 @@ public class Item implements Comparable<Item> {
 		final String METHOD_NAME = "copy";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME);
 
-		Item item = new Item();
-		item.uName = this.uName;
-		item.categories = new TreeSet<>(this.categories);
-		item.etaDate = (Date) this.etaDate.clone();
-		item.priority = this.priority;
-		item.text = this.text;
-		item.title = this.title;
-		item.done = this.done;
+		// a partially loaded item stays partially loaded (copy() must not modify
+		// it, since it is called on shared items):
+		Item item = new Item(this.uName, this.title, this.text,
+				this.categories != null ? new TreeSet<>(this.categories) : null, (Date) this.etaDate.clone(),
+				this.priority, this.done);
+		item.textHash = this.textHash;
+		item.textStore = this.textStore;
+		item.hydrator = this.hydrator;
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME, item);
 		return item;
@@ -193,9 +395,12 @@ public class Item implements Comparable<Item> {
 	@Override
 	public String toString() {
 		final int maxLen = 5;
+		if (hydrator != null)
+			return String.format("Item [uName=%s, etaDate=%s, priority=%s, done=%s, partially loaded]", uName,
+					etaDate, priority, done);
 		return String.format("Item [uName=%s, title=%s, text=%s, categories=%s, etaDate=%s, priority=%s, done=%s]",
-				uName, title, text.replace("\n", "\\n"), categories != null ? toString(categories, maxLen) : null,
-				etaDate, priority, done);
+				uName, title, text != null ? text.replace("\n", "\\n") : "<" + textHash + ">",
+				categories != null ? toString(categories, maxLen) : null, etaDate, priority, done);
 	}
 
 	private String toString(Collection<?> collection, int maxLen) {
@@ -265,6 +470,30 @@ public class Item implements Comparable<Item> {
 		return value;
 	}
 
+	/**
+	 * Roughly estimates the heap memory used by {@link Item item} (object
+	 * headers, references and string contents; 64-bit JVM assumed). Only fields
+	 * loaded at the time of the call are counted; a partially loaded
+	 * {@link Item} keeps nothing else in memory.
+	 * 
+	 * @param item the {@link Item} to estimate the memory usage for
+	 * @return the estimated number of bytes
+	 */
+	public static long estimateMemoryUsage(Item item) {
+		long bytes = 48 // Item object
+				+ estimateMemoryUsage(item.uName) + estimateMemoryUsage(item.title) + estimateMemoryUsage(item.text)
+				+ 24 // Date
+				+ 48; // TreeSet + TreeMap
+		if (item.categories != null)
+			for (String category : item.categories)
+				bytes += 40 + estimateMemoryUsage(category); // TreeMap.Entry
+		return bytes;
+	}
+
+	private static long estimateMemoryUsage(String string) {
+		return string == null ? 0 : 40 + 2L * string.length();
+	}
+
 	/**
 	 * Calculates the days left to {@link Date date}.
 	 * 
@@ -0,0 +1,120 @@
+package voruti.priorit;
+
+/**
+ * A change of an {@link Item} published by {@link PrioritManager}. Immutable:
+ * the {@link Item items} are copied on every access, as one event is delivered
+ * to all subscribers.
+ * 
+ * @author voruti
+ * 
+ * @see ItemEventPublisher
+ */
+public class ItemEvent {
+
+	/**
+	 * The kind of change.
+	 */
+	public enum Type {
+		/**
+		 * The {@link Item} was not present before.
+		 */
+		ADDED,
+		/**
+		 * The {@link Item} was changed, but neither its {@link Priority} nor its
+		 * done state.
+		 */
+		UPDATED,
+		/**
+		 * The {@link Priority} of the {@link Item} was changed.
+		 */
+		PRIORITY_CHANGED,
+		/**
+		 * The {@link Item} was marked as done.
+		 */
+		COMPLETED
+	}
+
+	private final long sequence;
+	private final Type type;
+	private final Item item;
+	private final Item previousItem;
+	private final long timestamp;
+
+	/**
+	 * @param sequence     the sequence number; ascending without gaps
+	 * @param type         the kind of change
+	 * @param item         the {@link Item} after the change; not modified
+	 *                     afterwards
+	 * @param previousItem the {@link Item} before the change; {@code null} for
+	 *                     {@link Type#ADDED}; not modified afterwards
+	 * @param timestamp    the time of the change in milliseconds since the epoch
+	 */
+	public ItemEvent(long sequence, Type type, Item item, Item previousItem, long timestamp) {
+		this.sequence = sequence;
+		this.type = type;
+		this.item = item;
+		this.previousItem = previousItem;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Determines the {@link Type} of a change.
+	 * 
+	 * @param item         the {@link Item} after the change
+	 * @param previousItem the {@link Item} before the change; {@code null} if it
+	 *                     was not present
+	 * @return the {@link Type} of the change
+	 */
+	public static Type typeOf(Item item, Item previousItem) {
+		if (previousItem == null)
+			return Type.ADDED;
+		else if (item.isDone() && !previousItem.isDone())
+			return Type.COMPLETED;
+		else if (item.getPriority() != previousItem.getPriority())
+			return Type.PRIORITY_CHANGED;
+		else
+			return Type.UPDATED;
+	}
+
+	/**
+	 * @return the sequence
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return a copy of the item
+	 */
+	public Item getItem() {
+		return item.copy();
+	}
+
+	/**
+	 * @return a copy of the previousItem; {@code null} for {@link Type#ADDED}
+	 */
+	public Item getPreviousItem() {
+		return previousItem == null ? null : previousItem.copy();
+	}
+
+	/**
+	 * @return the timestamp
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ItemEvent [sequence=%s, type=%s, item=%s, timestamp=%s]", sequence, type, item,
+				timestamp);
+	}
+
+}
@@ -0,0 +1,327 @@
+package voruti.priorit;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes sequence numbered {@link ItemEvent item events} to
+ * {@link Subscriber subscribers} with backpressure. The interfaces follow
+ * {@code java.util.concurrent.Flow} (not available on Java 8).
+ * <p>
+ * The last {@link #capacity} events are retained, so subscribers can resume
+ * from a known sequence number. Every subscriber reads from this shared
+ * buffer at its own pace; a subscriber falling behind by more than
+ * {@link #capacity} events gets {@link Subscriber#onError(Throwable)}.
+ *
+ * @author voruti
+ */
+public class ItemEventPublisher implements Closeable {
+
+	private static final String CLASS_NAME = ItemEventPublisher.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Default number of retained events.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Receiver of {@link ItemEvent item events}; like
+	 * {@code java.util.concurrent.Flow.Subscriber}. Methods of one subscriber are
+	 * never called concurrently.
+	 */
+	public interface Subscriber {
+
+		/**
+		 * Called once before any other method.
+		 *
+		 * @param subscription the {@link Subscription} to request events with
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called for every event, in ascending sequence; at most as many times as
+		 * requested.
+		 *
+		 * @param event the next event
+		 */
+		void onNext(ItemEvent event);
+
+		/**
+		 * Called if no more events can be delivered (e.g. the requested ones are no
+		 * longer retained). No more methods are called afterwards.
+		 *
+		 * @param throwable the reason
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called after the last event when the publisher was closed.
+		 */
+		void onComplete();
+
+	}
+
+	/**
+	 * Link between the publisher and one {@link Subscriber}; like
+	 * {@code java.util.concurrent.Flow.Subscription}.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Allows the delivery of {@code n} more events.
+		 *
+		 * @param n the number of events; has to be positive
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the delivery of events.
+		 */
+		void cancel();
+
+	}
+
+	private final int capacity;
+
+	private final Executor executor;
+
+	/**
+	 * Ring buffer of the retained events; the event with sequence {@code s} is at
+	 * {@code (s - 1) % capacity}.
+	 */
+	private final ItemEvent[] events;
+
+	/**
+	 * The sequence number of the next published event.
+	 */
+	private long nextSequence = 1;
+
+	private final List<SubscriptionImpl> subscriptions = new CopyOnWriteArrayList<>();
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a publisher retaining {@value #DEFAULT_CAPACITY} events and
+	 * delivering on the common {@link ForkJoinPool}.
+	 */
+	public ItemEventPublisher() {
+		this(DEFAULT_CAPACITY, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param capacity the number of retained events
+	 * @param executor the {@link Executor} to deliver events on
+	 */
+	public ItemEventPublisher(int capacity, Executor executor) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity has to be positive");
+		this.capacity = capacity;
+		this.executor = executor;
+		this.events = new ItemEvent[capacity];
+	}
+
+	/**
+	 * @return the sequence number of the last published event; {@code 0} if
+	 *         there is none
+	 */
+	public synchronized long getLastSequence() {
+		return nextSequence - 1;
+	}
+
+	/**
+	 * @return the number of active subscriptions
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Publishes a new event to all subscribers.
+	 *
+	 * @param type         the kind of change
+	 * @param item         the {@link Item} after the change
+	 * @param previousItem the {@link Item} before the change; {@code null} for
+	 *                     {@link ItemEvent.Type#ADDED}
+	 * @return the published event
+	 */
+	public ItemEvent publish(ItemEvent.Type type, Item item, Item previousItem) {
+		ItemEvent event;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("Publisher is closed");
+			event = new ItemEvent(nextSequence, type, item, previousItem, System.currentTimeMillis());
+			events[(int) ((nextSequence - 1) % capacity)] = event;
+			nextSequence++;
+		}
+		LOGGER.log(Level.FINE, "Published event={0}", event);
+
+		for (SubscriptionImpl subscription : subscriptions)
+			subscription.signal();
+		return event;
+	}
+
+	/**
+	 * Subscribes to all events published from now on.
+	 *
+	 * @param subscriber the {@link Subscriber}
+	 */
+	public void subscribe(Subscriber subscriber) {
+		long from;
+		synchronized (this) {
+			from = nextSequence;
+		}
+		subscribe(subscriber, from);
+	}
+
+	/**
+	 * Subscribes to the events starting at sequence number {@code fromSequence}
+	 * (e.g. the last processed sequence + 1). Fails with
+	 * {@link Subscriber#onError(Throwable)} if these events are no longer
+	 * retained.
+	 *
+	 * @param subscriber   the {@link Subscriber}
+	 * @param fromSequence the sequence number of the first wanted event
+	 */
+	public void subscribe(Subscriber subscriber, long fromSequence) {
+		SubscriptionImpl subscription = new SubscriptionImpl(subscriber, Math.max(1, fromSequence));
+		subscriptions.add(subscription);
+		subscription.signal();
+	}
+
+	/**
+	 * Completes all subscriptions after they received the remaining events. No
+	 * more events can be published.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (SubscriptionImpl subscription : subscriptions)
+			subscription.signal();
+	}
+
+	/**
+	 * @param sequence the sequence number
+	 * @return the event with {@code sequence}; {@code null} if it is not
+	 *         published yet
+	 * @throws EventsLostException if the event is no longer retained
+	 */
+	private synchronized ItemEvent get(long sequence) {
+		if (sequence >= nextSequence)
+			return null;
+		if (sequence < nextSequence - capacity)
+			throw new EventsLostException(
+					String.format("Event sequence=%d is no longer retained (capacity=%d)", sequence, capacity));
+		return events[(int) ((sequence - 1) % capacity)];
+	}
+
+	/**
+	 * Thrown if requested events are no longer retained.
+	 */
+	public static class EventsLostException extends IllegalStateException {
+
+		private static final long serialVersionUID = 1L;
+
+		private EventsLostException(String message) {
+			super(message);
+		}
+
+	}
+
+	private final class SubscriptionImpl implements Subscription {
+
+		private final Subscriber subscriber;
+
+		/**
+		 * Sequence number of the next event to deliver.
+		 */
+		private long next;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		/**
+		 * Number of pending {@link #signal()} calls; the delivery loop runs while it
+		 * is not zero, so only one thread delivers at a time.
+		 */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private boolean subscribed = false;
+
+		private volatile boolean cancelled = false;
+
+		private volatile Throwable requestError = null;
+
+		private SubscriptionImpl(Subscriber subscriber, long next) {
+			this.subscriber = subscriber;
+			this.next = next;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0)
+				requestError = new IllegalArgumentException("Requested number of events has to be positive");
+			else
+				demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+		}
+
+		private void signal() {
+			if (pending.getAndIncrement() == 0)
+				executor.execute(this::deliver);
+		}
+
+		private void deliver() {
+			int missed = 1;
+			do {
+				try {
+					if (!subscribed) {
+						subscribed = true;
+						subscriber.onSubscribe(this);
+					}
+
+					while (!cancelled && requestError == null && demand.get() > 0) {
+						ItemEvent event = get(next);
+						if (event == null)
+							break;
+						next++;
+						demand.decrementAndGet();
+						subscriber.onNext(event);
+					}
+
+					if (!cancelled && requestError != null) {
+						cancel();
+						subscriber.onError(requestError);
+					} else if (!cancelled && closed && get(next) == null) {
+						cancel();
+						subscriber.onComplete();
+					}
+				} catch (EventsLostException e) {
+					if (!cancelled) {
+						cancel();
+						subscriber.onError(e);
+					}
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Subscriber={0} failed, cancelling it", subscriber);
+					e.printStackTrace();
+					cancel();
+				}
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,369 @@
+package voruti.priorit;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Converts {@link Item items} from and to single line JSON objects (without
+ * external libraries):
+ *
+ * <pre>
+ * {"uName":"..","title":"..","text":"..","categories":[".."],"etaDate":1234,"priority":"HIGH","done":false}
+ * </pre>
+ *
+ * {@code etaDate} is in milliseconds since the epoch.
+ *
+ * @author voruti
+ */
+public final class ItemJson {
+
+	private ItemJson() {
+	}
+
+	/**
+	 * @param item the {@link Item} to convert
+	 * @return the JSON object; contains no line breaks
+	 */
+	public static String toJson(Item item) {
+		StringBuilder builder = new StringBuilder(128);
+		appendJson(item, builder);
+		return builder.toString();
+	}
+
+	/**
+	 * @param items the {@link Item items} to convert
+	 * @return a JSON array of the objects
+	 */
+	public static String toJson(List<Item> items) {
+		StringBuilder builder = new StringBuilder(128 * items.size() + 2);
+		builder.append('[');
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0)
+				builder.append(',');
+			appendJson(items.get(i), builder);
+		}
+		builder.append(']');
+		return builder.toString();
+	}
+
+	/**
+	 * Appends the JSON object of {@link Item item} to {@code builder}.
+	 *
+	 * @param item    the {@link Item} to convert
+	 * @param builder the {@link StringBuilder} to append to
+	 */
+	public static void appendJson(Item item, StringBuilder builder) {
+		builder.append("{\"uName\":");
+		appendString(item.getuName(), builder);
+		builder.append(",\"title\":");
+		appendString(item.getTitle(), builder);
+		builder.append(",\"text\":");
+		appendString(item.getText(), builder);
+		builder.append(",\"categories\":[");
+		List<String> categories = item.getCategories();
+		for (int i = 0; i < categories.size(); i++) {
+			if (i > 0)
+				builder.append(',');
+			appendString(categories.get(i), builder);
+		}
+		builder.append("],\"etaDate\":")
+				.append(item.getEtaDate()
+						.getTime())
+				.append(",\"priority\":\"")
+				.append(item.getPriority()
+						.name())
+				.append("\",\"done\":")
+				.append(item.isDone())
+				.append('}');
+	}
+
+	/**
+	 * Parses an {@link Item} from a JSON object written by
+	 * {@link #toJson(Item)}. Unknown fields are ignored, missing ones (and a
+	 * {@code null} title or text) keep the defaults of {@link Item#Item()}
+	 * (except the uName, which is required). The uName is lowercased like by
+	 * {@link Item#setuName(String)}; as it names the item file, it must not be
+	 * empty, {@code "."} or {@code ".."} nor contain path separators or control
+	 * characters.
+	 *
+	 * @param json the JSON object
+	 * @return the parsed {@link Item}
+	 * @throws IllegalArgumentException if {@code json} is no valid item object
+	 */
+	public static Item fromJson(String json) {
+		return new Parser(json).parseItem();
+	}
+
+	/**
+	 * @param uName the uName
+	 * @return {@code true}, if {@code uName} can be used as name of an item file
+	 */
+	private static boolean isValidFileName(String uName) {
+		if (uName.isEmpty() || uName.equals(".") || uName.equals(".."))
+			return false;
+		for (int i = 0; i < uName.length(); i++) {
+			char c = uName.charAt(i);
+			if (c == '/' || c == '\\' || c < 0x20)
+				return false;
+		}
+		return true;
+	}
+
+	private static void appendString(String string, StringBuilder builder) {
+		if (string == null) {
+			builder.append("null");
+			return;
+		}
+		builder.append('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					builder.append(String.format("\\u%04x", (int) c));
+				else
+					builder.append(c);
+			}
+		}
+		builder.append('"');
+	}
+
+	/**
+	 * Minimal parser for the flat item objects.
+	 */
+	private static final class Parser {
+
+		private final String json;
+		private int position = 0;
+
+		private Parser(String json) {
+			this.json = json;
+		}
+
+		private Item parseItem() {
+			// defaults like Item():
+			String uName = null;
+			String title = "";
+			String text = "";
+			TreeSet<String> categories = null;
+			Date etaDate = null;
+			Priority priority = Priority.VERY_LOW;
+			boolean done = false;
+
+			expect('{');
+			if (!consume('}')) {
+				do {
+					String key = parseString();
+					if (key == null)
+						throw error("field name expected");
+					expect(':');
+					switch (key) {
+					case "uName":
+						uName = parseString();
+						break;
+					case "title":
+						title = parseString();
+						break;
+					case "text":
+						text = parseString();
+						break;
+					case "categories":
+						categories = new TreeSet<>();
+						expect('[');
+						if (!consume(']')) {
+							do {
+								String category = parseString();
+								if (category == null)
+									throw error("category must not be null");
+								categories.add(category);
+							} while (consume(','));
+							expect(']');
+						}
+						break;
+					case "etaDate":
+						etaDate = new Date(parseLong());
+						break;
+					case "priority":
+						try {
+							priority = Priority.valueOf(parseString());
+						} catch (IllegalArgumentException | NullPointerException e) {
+							throw error("unknown priority");
+						}
+						break;
+					case "done":
+						done = parseBoolean();
+						break;
+					default:
+						skipValue();
+					}
+				} while (consume(','));
+				expect('}');
+			}
+			skipWhitespace();
+			if (position != json.length())
+				throw error("trailing characters");
+			if (uName == null)
+				throw error("uName is missing");
+			if (!isValidFileName(uName))
+				throw error("uName is no valid file name");
+
+			if (categories == null) {
+				categories = new TreeSet<>();
+				categories.add("none");
+			}
+			if (etaDate == null)
+				etaDate = new Date(System.currentTimeMillis() + 2592000000L); // 30 days
+			if (title == null)
+				title = "";
+			if (text == null)
+				text = "";
+
+			return new Item(uName.toLowerCase(), title, text, categories, etaDate, priority, done);
+		}
+
+		private String parseString() {
+			skipWhitespace();
+			if (json.startsWith("null", position)) {
+				position += 4;
+				return null;
+			}
+			expect('"');
+			StringBuilder builder = new StringBuilder();
+			while (true) {
+				if (position >= json.length())
+					throw error("unterminated string");
+				char c = json.charAt(position++);
+				if (c == '"')
+					return builder.toString();
+				if (c != '\\') {
+					builder.append(c);
+					continue;
+				}
+				if (position >= json.length())
+					throw error("unterminated escape");
+				char escaped = json.charAt(position++);
+				switch (escaped) {
+				case 'n':
+					builder.append('\n');
+					break;
+				case 'r':
+					builder.append('\r');
+					break;
+				case 't':
+					builder.append('\t');
+					break;
+				case 'b':
+					builder.append('\b');
+					break;
+				case 'f':
+					builder.append('\f');
+					break;
+				case 'u':
+					if (position + 4 > json.length())
+						throw error("invalid unicode escape");
+					try {
+						builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("invalid unicode escape");
+					}
+					position += 4;
+					break;
+				default: // '"', '\\' and '/'
+					builder.append(escaped);
+				}
+			}
+		}
+
+		private long parseLong() {
+			skipWhitespace();
+			int start = position;
+			if (position < json.length() && json.charAt(position) == '-')
+				position++;
+			while (position < json.length() && Character.isDigit(json.charAt(position)))
+				position++;
+			try {
+				return Long.parseLong(json.substring(start, position));
+			} catch (NumberFormatException e) {
+				throw error("invalid number");
+			}
+		}
+
+		private boolean parseBoolean() {
+			skipWhitespace();
+			if (json.startsWith("true", position)) {
+				position += 4;
+				return true;
+			}
+			if (json.startsWith("false", position)) {
+				position += 5;
+				return false;
+			}
+			throw error("invalid boolean");
+		}
+
+		/**
+		 * Skips a value of an unknown field (no nested objects supported).
+		 */
+		private void skipValue() {
+			skipWhitespace();
+			if (position >= json.length())
+				throw error("missing value");
+			char c = json.charAt(position);
+			if (c == '"') {
+				parseString();
+			} else if (c == '[') {
+				position++;
+				if (!consume(']')) {
+					do {
+						skipValue();
+					} while (consume(','));
+					expect(']');
+				}
+			} else {
+				while (position < json.length() && ",}]".indexOf(json.charAt(position)) < 0)
+					position++;
+			}
+		}
+
+		private void expect(char c) {
+			if (!consume(c))
+				throw error("'" + c + "' expected");
+		}
+
+		private boolean consume(char c) {
+			skipWhitespace();
+			if (position < json.length() && json.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (position < json.length() && Character.isWhitespace(json.charAt(position)))
+				position++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(String.format("Invalid item JSON at position=%d: %s", position, message));
+		}
+
+	}
+
+}
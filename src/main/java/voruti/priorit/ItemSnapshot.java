@@ -0,0 +1,281 @@
+package voruti.priorit;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Immutable state of an {@link Item}. Snapshots can be shared between threads
+ * and callers without copying; the {@code with*} methods return a new snapshot
+ * that shares all unchanged fields (including the category list) with this
+ * one.
+ *
+ * @author voruti
+ */
+public final class ItemSnapshot implements Comparable<ItemSnapshot> {
+
+	/**
+	 * The categories of a new {@link Item}; shared by all snapshots having only
+	 * this category.
+	 */
+	private static final List<String> DEFAULT_CATEGORIES = Collections.singletonList("none");
+
+	private final String uName;
+	private final String title;
+	private final String text;
+	/**
+	 * Sorted and unmodifiable.
+	 */
+	private final List<String> categories;
+	private final long etaMillis;
+	private final Priority priority;
+	private final boolean done;
+
+	private ItemSnapshot(String uName, String title, String text, List<String> categories, long etaMillis,
+			Priority priority, boolean done) {
+		this.uName = uName;
+		this.title = title;
+		this.text = text;
+		this.categories = categories;
+		this.etaMillis = etaMillis;
+		this.priority = priority;
+		this.done = done;
+	}
+
+	/**
+	 * Creates a snapshot of the current state of {@link Item item}.
+	 *
+	 * @param item the {@link Item}
+	 * @return the snapshot
+	 */
+	public static ItemSnapshot of(Item item) {
+		return new ItemSnapshot(item.getuName(), item.getTitle(), item.getText(),
+				toCategoryList(item.getCategories()), item.getEtaDate()
+						.getTime(),
+				item.getPriority(), item.isDone());
+	}
+
+	/**
+	 * @return a new mutable {@link Item} with the state of this snapshot
+	 */
+	public Item toItem() {
+		return new Item(uName, title, text, new TreeSet<>(categories), new Date(etaMillis), priority, done);
+	}
+
+	/**
+	 * @return the uName
+	 */
+	public String getuName() {
+		return uName;
+	}
+
+	/**
+	 * @return the title
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * @return the text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the sorted categories; unmodifiable and not copied
+	 */
+	public List<String> getCategories() {
+		return categories;
+	}
+
+	/**
+	 * @return the etaDate as milliseconds since the epoch
+	 */
+	public long getEtaMillis() {
+		return etaMillis;
+	}
+
+	/**
+	 * @return a new {@link Date} of the etaDate
+	 */
+	public Date getEtaDate() {
+		return new Date(etaMillis);
+	}
+
+	/**
+	 * @return the priority
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @return the done
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @param title the new title
+	 * @return a snapshot with {@code title}
+	 */
+	public ItemSnapshot withTitle(String title) {
+		return new ItemSnapshot(uName, title, text, categories, etaMillis, priority, done);
+	}
+
+	/**
+	 * @param text the new text
+	 * @return a snapshot with {@code text}
+	 */
+	public ItemSnapshot withText(String text) {
+		return new ItemSnapshot(uName, title, text, categories, etaMillis, priority, done);
+	}
+
+	/**
+	 * @param categories the new categories
+	 * @return a snapshot with {@code categories}
+	 */
+	public ItemSnapshot withCategories(Collection<String> categories) {
+		return new ItemSnapshot(uName, title, text, toCategoryList(categories), etaMillis, priority, done);
+	}
+
+	/**
+	 * @param category the category to add
+	 * @return a snapshot with {@code category} added; this snapshot if it is
+	 *         already present
+	 */
+	public ItemSnapshot withCategory(String category) {
+		int index = Collections.binarySearch(categories, category);
+		if (index >= 0)
+			return this;
+
+		int insertAt = -index - 1;
+		String[] newCategories = new String[categories.size() + 1];
+		for (int i = 0; i < insertAt; i++)
+			newCategories[i] = categories.get(i);
+		newCategories[insertAt] = category;
+		for (int i = insertAt; i < categories.size(); i++)
+			newCategories[i + 1] = categories.get(i);
+		return new ItemSnapshot(uName, title, text, Collections.unmodifiableList(Arrays.asList(newCategories)),
+				etaMillis, priority, done);
+	}
+
+	/**
+	 * @param category the category to remove
+	 * @return a snapshot without {@code category}; this snapshot if it is not
+	 *         present
+	 */
+	public ItemSnapshot withoutCategory(String category) {
+		int index = Collections.binarySearch(categories, category);
+		if (index < 0)
+			return this;
+
+		String[] newCategories = new String[categories.size() - 1];
+		for (int i = 0, j = 0; i < categories.size(); i++)
+			if (i != index)
+				newCategories[j++] = categories.get(i);
+		return new ItemSnapshot(uName, title, text, Collections.unmodifiableList(Arrays.asList(newCategories)),
+				etaMillis, priority, done);
+	}
+
+	/**
+	 * @param etaDate the new etaDate
+	 * @return a snapshot with {@code etaDate}
+	 */
+	public ItemSnapshot withEtaDate(Date etaDate) {
+		return new ItemSnapshot(uName, title, text, categories, etaDate.getTime(), priority, done);
+	}
+
+	/**
+	 * @param priority the new priority
+	 * @return a snapshot with {@code priority}
+	 */
+	public ItemSnapshot withPriority(Priority priority) {
+		return new ItemSnapshot(uName, title, text, categories, etaMillis, priority, done);
+	}
+
+	/**
+	 * @param done the new done state
+	 * @return a snapshot with {@code done}
+	 */
+	public ItemSnapshot withDone(boolean done) {
+		return new ItemSnapshot(uName, title, text, categories, etaMillis, priority, done);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(uName);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ItemSnapshot))
+			return false;
+		ItemSnapshot other = (ItemSnapshot) obj;
+		return Objects.equals(uName, other.uName);
+	}
+
+	/**
+	 * Same order as {@link Item#compareTo(Item)}.
+	 */
+	@Override
+	public int compareTo(ItemSnapshot s) {
+		if (this.equals(s))
+			return 0;
+		if (this.done != s.done)
+			return this.done ? 1 : -1;
+
+		LocalDate today = LocalDate.now();
+		int valueCompare = this.calculateValue(today) - s.calculateValue(today);
+		if (valueCompare != 0)
+			return valueCompare;
+		int prioCompare = this.priority.getValue() - s.priority.getValue();
+		if (prioCompare != 0)
+			return prioCompare;
+		return this.uName.compareTo(s.uName);
+	}
+
+	/**
+	 * @param today the current day
+	 * @return the value like {@link Item#calculateValue(Item)}
+	 */
+	private int calculateValue(LocalDate today) {
+		int daysLeft = (int) ChronoUnit.DAYS.between(today, Instant.ofEpochMilli(etaMillis)
+				.atZone(ZoneId.systemDefault())
+				.toLocalDate());
+		return daysLeft * priority.getValue();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ItemSnapshot [uName=%s, title=%s, categories=%s, etaDate=%s, priority=%s, done=%s]",
+				uName, title, categories, getEtaDate(), priority, done);
+	}
+
+	/**
+	 * @param categories the categories
+	 * @return the sorted, unmodifiable category list; {@link #DEFAULT_CATEGORIES}
+	 *         for the default categories
+	 */
+	private static List<String> toCategoryList(Collection<String> categories) {
+		String[] sorted = new TreeSet<>(categories).toArray(new String[0]);
+		if (sorted.length == 1 && DEFAULT_CATEGORIES.get(0)
+				.equals(sorted[0]))
+			return DEFAULT_CATEGORIES;
+		return Collections.unmodifiableList(Arrays.asList(sorted));
+	}
+
+}
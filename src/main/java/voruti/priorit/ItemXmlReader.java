@@ -0,0 +1,301 @@
+package voruti.priorit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.basic.DateConverter;
+
+/**
+ * Streaming (StAX) reader of the fields of an item file (as written by XStream)
+ * that are needed for the order of {@link Item items} (uName, etaDate, priority
+ * and done), of the categories and of the textHash (which is omitted for an
+ * inline text). Reading stops as soon as these are found (or the text element
+ * starts), so title and text are neither converted nor (for files written with
+ * the current field order) read. The returned {@link Item} loads them on first
+ * access with an {@link Item.Hydrator}, which is shared with its copies, so the
+ * file is loaded once for all of them. If the file is no longer the version
+ * that was read, its current version is loaded instead.
+ *
+ * @author voruti
+ */
+final class ItemXmlReader {
+
+	private static final String CLASS_NAME = ItemXmlReader.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	private static final int BUFFER_SIZE = 1 << 12;
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+	/**
+	 * Same format as used by XStream for {@link Date dates}.
+	 */
+	private static final DateConverter DATE_CONVERTER = new DateConverter();
+
+	private ItemXmlReader() {
+	}
+
+	/**
+	 * Notified once the complete version of a partially loaded {@link Item} was
+	 * loaded by its {@link Item.Hydrator}.
+	 */
+	interface LoadListener {
+
+		/**
+		 * @param hydrator the {@link Item.Hydrator} of the partially loaded
+		 *                 {@link Item} (and its copies)
+		 * @param item     the complete {@link Item}; must not be modified
+		 */
+		void loaded(Item.Hydrator hydrator, Item item);
+
+	}
+
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+
+	/**
+	 * Reads the fields needed for the order and the categories of an
+	 * {@link Item} from the item file at {@code path}.
+	 *
+	 * @param path   the path of the item file
+	 * @param loader loads the complete {@link Item} from the file (once the
+	 *               other fields are accessed)
+	 * @return the partially loaded {@link Item}
+	 * @throws IOException if the file can not be read, does not contain the
+	 *                     needed fields or is changed while reading
+	 */
+	static Item readOrderingFields(Path path, Item.Hydrator loader) throws IOException {
+		return readOrderingFields(path, loader, (hydrator, item) -> {
+		});
+	}
+
+	/**
+	 * Reads the fields needed for the order, the categories and the textHash of
+	 * an {@link Item} from the item file at {@code path}.
+	 *
+	 * @param path     the path of the item file
+	 * @param loader   loads the complete {@link Item} from the file (once the
+	 *                 other fields are accessed)
+	 * @param listener notified when the complete {@link Item} of the read
+	 *                 version was loaded
+	 * @return the partially loaded {@link Item}
+	 * @throws IOException if the file can not be read, does not contain the
+	 *                     needed fields or is changed while reading
+	 */
+	static Item readOrderingFields(Path path, Item.Hydrator loader, LoadListener listener) throws IOException {
+		FileVersion version = FileVersion.of(path);
+		String uName = null;
+		Date etaDate = null;
+		Priority priority = null;
+		Boolean done = null;
+		TreeSet<String> categories = null;
+		String textHash = null;
+		boolean textHashRead = false; // (the textHash is omitted for an inline text)
+
+		try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path)), BUFFER_SIZE)) {
+			XMLStreamReader xmlReader = XML_INPUT_FACTORY.createXMLStreamReader(reader);
+			try {
+				int depth = 0;
+				while (xmlReader.hasNext() && (uName == null || etaDate == null || priority == null
+						|| done == null || categories == null || !textHashRead)) {
+					int event = xmlReader.next();
+					if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					} else if (event == XMLStreamConstants.START_ELEMENT) {
+						depth++;
+						if (depth == 2) { // fields of the item
+							switch (xmlReader.getLocalName()) {
+							case "uName":
+								uName = xmlReader.getElementText();
+								depth--;
+								break;
+							case "etaDate":
+								etaDate = (Date) DATE_CONVERTER.fromString(xmlReader.getElementText());
+								depth--;
+								break;
+							case "priority":
+								priority = Priority.valueOf(xmlReader.getElementText()
+										.trim());
+								depth--;
+								break;
+							case "done":
+								done = Boolean.valueOf(xmlReader.getElementText()
+										.trim());
+								depth--;
+								break;
+							case "categories":
+								categories = readStrings(xmlReader);
+								depth--;
+								break;
+							case "textHash":
+								textHash = xmlReader.getElementText()
+										.trim();
+								textHashRead = true;
+								depth--;
+								break;
+							case "text": // (not read)
+								textHashRead = true;
+								break;
+							default:
+								break;
+							}
+						}
+					}
+				}
+			} finally {
+				xmlReader.close();
+			}
+		} catch (XMLStreamException | ConversionException | IllegalArgumentException e) {
+			throw new IOException(String.format("File path=%s contains no valid item", path), e);
+		}
+
+		if (uName == null || etaDate == null || priority == null)
+			throw new IOException(String.format("File path=%s misses fields of the item", path));
+		if (!version.equals(FileVersion.of(path)))
+			throw new IOException(String.format("File path=%s was changed while reading", path));
+		// XStream omits no primitive fields, but be lenient:
+		Item item = new Item(uName, null, null, categories, etaDate, priority, done != null && done);
+		if (textHash != null)
+			item = item.withStoredText(textHash, null);
+		item.setHydrator(new VersionCheckingHydrator(path, version, loader, listener));
+		return item;
+	}
+
+	/**
+	 * Reads the texts of the child elements of the current element (e.g. the
+	 * {@code <string>} elements of a collection) until its end.
+	 */
+	private static TreeSet<String> readStrings(XMLStreamReader xmlReader) throws XMLStreamException {
+		TreeSet<String> strings = new TreeSet<>();
+		while (true) {
+			int event = xmlReader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				strings.add(xmlReader.getElementText()); // (to its end element)
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				return strings;
+		}
+	}
+
+	/**
+	 * Identifies the version of a file by its key (e.g. inode), modification time
+	 * and size. Saves replace item files, so a saved file gets another version.
+	 */
+	static final class FileVersion {
+
+		private final Object fileKey;
+		private final FileTime lastModifiedTime;
+		private final long size;
+
+		private FileVersion(BasicFileAttributes attributes) {
+			this.fileKey = attributes.fileKey();
+			this.lastModifiedTime = attributes.lastModifiedTime();
+			this.size = attributes.size();
+		}
+
+		/**
+		 * @param path the path of the file
+		 * @return the current version of the file
+		 * @throws IOException if its attributes can not be read
+		 */
+		static FileVersion of(Path path) throws IOException {
+			return new FileVersion(Files.readAttributes(path, BasicFileAttributes.class));
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(fileKey, lastModifiedTime, size);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof FileVersion))
+				return false;
+			FileVersion other = (FileVersion) obj;
+			return Objects.equals(fileKey, other.fileKey) && lastModifiedTime.equals(other.lastModifiedTime)
+					&& size == other.size;
+		}
+
+	}
+
+	/**
+	 * {@link Item.Hydrator} loading the complete {@link Item} of the
+	 * {@link FileVersion version} the ordering fields were read from. The loaded
+	 * {@link Item} is kept for the copies of the partially loaded one (which
+	 * drop the {@link Item.Hydrator} once they loaded their fields). If the file
+	 * was replaced meanwhile, the current version is loaded instead (and not
+	 * kept), as the read one is lost.
+	 */
+	static final class VersionCheckingHydrator implements Item.Hydrator {
+
+		private final Path path;
+
+		private final FileVersion version;
+
+		private final Item.Hydrator loader;
+
+		private final LoadListener listener;
+
+		/**
+		 * The complete {@link Item} of {@link #version}; {@code null} until loaded.
+		 */
+		private Item loaded;
+
+		/**
+		 * @param path     the path of the item file
+		 * @param version  the {@link FileVersion} of the item file that was read
+		 * @param loader   loads the complete {@link Item} from the file
+		 * @param listener notified once the complete {@link Item} of
+		 *                 {@code version} was loaded
+		 */
+		VersionCheckingHydrator(Path path, FileVersion version, Item.Hydrator loader, LoadListener listener) {
+			this.path = path;
+			this.version = version;
+			this.loader = loader;
+			this.listener = listener;
+		}
+
+		@Override
+		public synchronized Item load() throws IOException {
+			if (loaded != null)
+				return loaded;
+
+			if (version.equals(FileVersion.of(path))) {
+				Item item = loader.load();
+				if (version.equals(FileVersion.of(path))) { // (not replaced while loading)
+					loaded = item;
+					listener.loaded(this, item);
+					return item;
+				}
+			}
+			LOGGER.log(Level.INFO, "File path={0} was changed since the item was loaded, loading the current version",
+					path);
+			return loader.load();
+		}
+
+	}
+
+}
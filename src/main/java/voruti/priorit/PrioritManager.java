@@ -1,19 +1,46 @@
 package voruti.priorit;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.FileVisitResult;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.XStreamException;
@@ -22,20 +49,145 @@ import com.thoughtworks.xstream.XStreamException;
  * @author voruti
  *
  */
-public class PrioritManager {
+public class PrioritManager implements Closeable {
 
 	private static final String CLASS_NAME = PrioritManager.class.getName();
 	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
 
 	private static final String ITEM_FILE_ENDING = ".xml";
 
-	private static XStream xstream = null;
+	/**
+	 * File ending of item files while they are written.
+	 */
+	private static final String TEMP_FILE_ENDING = ".tmp";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Texts with at least this many characters are stored in the
+	 * {@link #textStore} instead of the item file.
+	 */
+	private static final int TEXT_BLOB_THRESHOLD = 1024;
+
+	/**
+	 * Subdirectory of {@link #directory} for the {@link #textStore}.
+	 */
+	static final String BLOB_DIRECTORY = "blobs";
+
+	/**
+	 * Blobs stored (or stored again) less than this many milliseconds before a
+	 * load started are kept by {@link #removeUnusedBlobs(long)}, as file systems
+	 * may round modification times down to seconds.
+	 */
+	private static final long BLOB_TIME_MARGIN = 2000;
+
+	/**
+	 * Number of lines parsed and saved together by
+	 * {@link #importItems(InputStream, boolean)}.
+	 */
+	private static final int IMPORT_BATCH_SIZE = 1024;
+
+	/**
+	 * Default maximum number of files read or written concurrently: twice the
+	 * number of processors (parsing and writing the XML takes CPU time besides
+	 * waiting for the disk), at most {@code 16}. More threads did not speed up
+	 * loads on SSDs and made imports to ext4 slower than sequential ones.
+	 */
+	public static final int DEFAULT_IO_CONCURRENCY = Math.min(16, 2 * Runtime.getRuntime()
+			.availableProcessors());
+
+	private static volatile XStream xstream = null;
 
 	/**
 	 * A directory to save all data in.
 	 */
 	private File directory;
 
+	/**
+	 * Stores the large texts, which are loaded on the first
+	 * {@link Item#getText()} only.
+	 */
+	private TextBlobStore textStore;
+
+	/**
+	 * Reads and writes the files of loads and imports concurrently.
+	 */
+	private volatile IoExecutor ioExecutor;
+
+	/**
+	 * Changes hold the read lock from storing a text until the {@link Item} is in
+	 * {@link #orderedItems}, {@link #removeUnusedBlobs(long)} the write lock, so
+	 * it sees all references to the blobs it keeps.
+	 */
+	private final ReadWriteLock blobLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Set by {@link #close()}; no more changes are accepted then.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Changes hold the read lock, {@link #close()} the write lock, so closing
+	 * waits for running changes.
+	 */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Estimated heap memory of the {@link Item items} in {@link #orderedItems} in
+	 * bytes.
+	 */
+	private final AtomicLong estimatedMemoryUsage = new AtomicLong();
+
+	/**
+	 * Publishes every successful change of an {@link Item}.
+	 */
+	private final ItemEventPublisher eventPublisher = new ItemEventPublisher();
+
+	/**
+	 * All {@link Item items} of {@link #directory} in their order (private
+	 * copies). Filled by {@link #loadFromFile()} and kept current by
+	 * {@link #addItem(Item, boolean)}, so reading does not touch the files. Also
+	 * used instead of asking the file system whether an {@link Item} exists.
+	 */
+	private volatile CalendarQueue orderedItems = new CalendarQueue();
+
+	/**
+	 * Guards changes of {@link #orderedItems}, {@link #estimatedMemoryUsage} and
+	 * {@link #version}, so they stay consistent with each other.
+	 */
+	private final Object indexLock = new Object();
+
+	/**
+	 * The {@link Item items} put into {@link #orderedItems} while
+	 * {@link #loadFromFile()} runs, to apply them to the loaded {@link Item
+	 * items} as well; {@code null} if no load runs. Guarded by
+	 * {@link #indexLock}.
+	 */
+	private List<Item> itemsPutDuringLoad = null;
+
+	/**
+	 * Serializes {@link #loadFromFile()}.
+	 */
+	private final Object loadLock = new Object();
+
+	/**
+	 * Incremented on every successful change through this manager and when the
+	 * day rolls over.
+	 */
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Number of {@link #uNameLocks}.
+	 */
+	private static final int UNAME_LOCK_COUNT = 256;
+
+	/**
+	 * Serialize saving, indexing and publishing of {@link Item items} with the
+	 * same uName (striped by hash), so the file, {@link #orderedItems} and the
+	 * events always agree on the latest version.
+	 */
+	private final Object[] uNameLocks = new Object[UNAME_LOCK_COUNT];
+
 	/**
 	 * Creates a new manager and saves all data in {@code directory}.
 	 * 
@@ -45,9 +197,28 @@ public class PrioritManager {
 	 *                     existing {@link Item items} can not be loaded
 	 */
 	public PrioritManager(File directory) throws IOException {
+		this(directory, new IoExecutor(DEFAULT_IO_CONCURRENCY));
+	}
+
+	/**
+	 * Creates a new manager and saves all data in {@code directory}, reading and
+	 * writing the files with {@code ioExecutor}, which may be shared with other
+	 * managers (see {@link PrioritManagerRegistry}).
+	 * 
+	 * @param directory  the directory to save all data in
+	 * @param ioExecutor runs the file operations of loads and imports
+	 * @throws IOException if the {@link File} is no directory, the
+	 *                     {@code directory} location cannot be created or the
+	 *                     existing {@link Item items} can not be loaded
+	 */
+	PrioritManager(File directory, IoExecutor ioExecutor) throws IOException {
 		final String METHOD_NAME = "<init>";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME, directory);
 
+		this.ioExecutor = ioExecutor;
+		for (int i = 0; i < uNameLocks.length; i++)
+			uNameLocks[i] = new Object();
+
 		// create directory:
 		try {
 			directory.mkdirs();
@@ -59,17 +230,9 @@ public class PrioritManager {
 			throw new IOException(String.format("File directory=%s is no directory", directory));
 
 		this.directory = directory;
+		this.textStore = new TextBlobStore(new File(directory, BLOB_DIRECTORY));
 
-		// init XStream:
-		if (xstream == null) {
-			xstream = new XStream();
-
-			// from https://stackoverflow.com/a/45152845 :
-			XStream.setupDefaultSecurity(xstream); // to be removed after 1.5
-			xstream.allowTypesByWildcard(new String[] { "voruti.priorit.**" });
-
-			xstream.alias("item", Item.class);
-		}
+		initXStream();
 
 		// checking/validating files:
 		loadFromFile();
@@ -77,6 +240,24 @@ public class PrioritManager {
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
 	}
 
+	/**
+	 * Initializes the shared {@link XStream} instance once. Synchronized, because
+	 * multiple managers may be created in parallel (e.g. by
+	 * {@link ShardedPrioritManager}).
+	 */
+	private static synchronized void initXStream() {
+		if (xstream == null) {
+			XStream newXStream = new XStream();
+
+			// the default security (deny all types) is active since XStream 1.4.18:
+			newXStream.allowTypesByWildcard(new String[] { "voruti.priorit.**" });
+
+			newXStream.alias("item", Item.class);
+
+			xstream = newXStream;
+		}
+	}
+
 	/**
 	 * @return the directory
 	 */
@@ -84,6 +265,77 @@ public class PrioritManager {
 		return directory;
 	}
 
+	/**
+	 * @return the maximum number of files read or written concurrently by
+	 *         {@link #reload()} and {@link #importItems(InputStream, boolean)}
+	 */
+	public int getIoConcurrency() {
+		return ioExecutor.getLimit();
+	}
+
+	/**
+	 * Sets the maximum number of files read or written concurrently by
+	 * {@link #reload()} and {@link #importItems(InputStream, boolean)}; uses
+	 * virtual threads if the JVM supports them (see {@link IoExecutor}). The
+	 * threads of the previous limit are shut down (unless they are shared);
+	 * waits for a running {@link #reload()}.
+	 * 
+	 * @param ioConcurrency the maximum; {@code 1} to access the files one after
+	 *                      another on the calling thread
+	 * @throws IllegalArgumentException if {@code ioConcurrency} is less than
+	 *                                  {@code 1}
+	 */
+	public void setIoConcurrency(int ioConcurrency) {
+		IoExecutor newExecutor = new IoExecutor(ioConcurrency);
+		Lock lock = closeLock.writeLock();
+		lock.lock();
+		try {
+			IoExecutor old = ioExecutor;
+			ioExecutor = newExecutor;
+			old.shutdown();
+			if (closed)
+				newExecutor.shutdown();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the estimated heap memory (in bytes) of the {@link Item items} kept
+	 *         in memory, including their cached {@link ItemSnapshot snapshots}
+	 * 
+	 * @see Item#estimateMemoryUsage(Item)
+	 */
+	public long getEstimatedMemoryUsage() {
+		return estimatedMemoryUsage.get() + orderedItems.getSnapshotMemoryUsage();
+	}
+
+	/**
+	 * The version is incremented on every successful change made through this
+	 * manager, on every {@link #reload()} and when the day rolls over (which
+	 * changes the order), so readers can check whether data they derived (e.g. a
+	 * {@link #getAllItems()} result) is still current. Changes made to the files
+	 * by other processes do not change the version; they are only seen after
+	 * {@link #reload()}.
+	 * 
+	 * @return the current version
+	 */
+	public long getVersion() {
+		getOrderedItems();
+		return version.get();
+	}
+
+	/**
+	 * Consumers can subscribe here to be notified of added and changed
+	 * {@link Item items} instead of polling {@link #getAllItems()}. Only changes
+	 * made through this manager are published.
+	 * 
+	 * @return the eventPublisher
+	 */
+	public ItemEventPublisher getEventPublisher() {
+		return eventPublisher;
+	}
+
 	/**
 	 * Saves/Adds an {@link Item} to the priority list.
 	 * 
@@ -108,14 +360,49 @@ public class PrioritManager {
 		final String METHOD_NAME = "addItem";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME, item);
 
+		Lock lock = closeLock.readLock();
+		lock.lock();
+		try {
+			if (closed) {
+				LOGGER.log(Level.WARNING, "Not saving item={0}, manager of directory={1} is closed",
+						new Object[] { item, directory });
+				LOGGER.exiting(CLASS_NAME, METHOD_NAME, false);
+				return false;
+			}
+			return addOpenItem(item, ignoreAlreadyPresent);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean addOpenItem(Item item, boolean ignoreAlreadyPresent) {
+		final String METHOD_NAME = "addItem";
+
 		boolean successful = false;
 
-		if (ignoreAlreadyPresent || !getFileToItem(item).exists()) {
-			successful = saveToFile(item);
-			if (!successful)
-				LOGGER.log(Level.WARNING, "Error at saving item={0} to file", item);
-		} else {
-			LOGGER.log(Level.WARNING, "item={0} is already in list", item);
+		synchronized (getUNameLock(item.getuName())) {
+			// the file system is only asked to confirm (rare) hits:
+			boolean present = orderedItems.contains(item.getuName()) && getFileToItem(item).exists();
+			if (ignoreAlreadyPresent || !present) {
+				Item previousItem = loadBeforeReplacing(item.getuName());
+				Lock lock = blobLock.readLock();
+				lock.lock();
+				try {
+					Item storedItem = toStoredItem(item);
+					successful = storedItem != null && saveToFile(storedItem);
+					if (successful)
+						putOrdered(storedItem == item ? item.copy() : storedItem);
+				} finally {
+					lock.unlock();
+				}
+				if (successful) {
+					eventPublisher.publish(ItemEvent.typeOf(item, previousItem), item.copy(), previousItem);
+				} else {
+					LOGGER.log(Level.WARNING, "Error at saving item={0} to file", item);
+				}
+			} else {
+				LOGGER.log(Level.WARNING, "item={0} is already in list", item);
+			}
 		}
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME, successful);
@@ -123,26 +410,72 @@ public class PrioritManager {
 	}
 
 	/**
+	 * Returns copies of all {@link Item items} from memory, without reading the
+	 * files or sorting. Use {@link #getVersion()} to check whether the result is
+	 * still current. Changes made to the files by other processes are not seen
+	 * until {@link #reload()}.
+	 * 
 	 * @return all saved {@link Item items}; sorted by priority (most important
-	 *         {@link Item} first); is empty if item can not be loaded
+	 *         {@link Item} first)
 	 */
 	public List<Item> getAllItems() {
 		final String METHOD_NAME = "getItems";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME);
 
-		List<Item> items = new ArrayList<>();
-		try {
-			items = loadFromFile();
-			LOGGER.log(Level.FINE, "Successfully obtained all items from the files");
-		} catch (IOException e) {
-			LOGGER.log(Level.WARNING, "Item list can not be obtained");
-			e.printStackTrace();
-		}
+		List<Item> items = getOrderedItems().toList();
+		items.replaceAll(Item::copy);
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, items);
+		return items;
+	}
+
+	/**
+	 * Returns copies of the {@code k} most important {@link Item items} from
+	 * memory; only these are copied.
+	 * 
+	 * @param k the maximum number of {@link Item items}
+	 * @return the first {@code k} {@link Item items} of {@link #getAllItems()}
+	 */
+	public List<Item> getTopItems(int k) {
+		final String METHOD_NAME = "getTopItems";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, k);
+
+		List<Item> items = getOrderedItems().toList(k);
+		items.replaceAll(Item::copy);
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME, items);
 		return items;
 	}
 
+	/**
+	 * Returns {@link ItemSnapshot snapshots} of all {@link Item items} from
+	 * memory. Unlike {@link #getAllItems()}, nothing is copied: every
+	 * {@link Item} gets one snapshot (on the first read), which is shared by all
+	 * readers until the {@link Item} changes.
+	 * 
+	 * @return all saved {@link Item items} as snapshots; sorted by priority (most
+	 *         important {@link Item} first)
+	 */
+	public List<ItemSnapshot> getAllSnapshots() {
+		final String METHOD_NAME = "getAllSnapshots";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		List<ItemSnapshot> snapshots = getOrderedItems().toSnapshotList();
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, snapshots.size());
+		return snapshots;
+	}
+
+	/**
+	 * @return the snapshot of the next/most important {@link Item} on the
+	 *         priority list; {@code null} if the list is empty
+	 * 
+	 * @see #getAllSnapshots()
+	 */
+	public ItemSnapshot getNextSnapshot() {
+		return getOrderedItems().peekSnapshot();
+	}
+
 	/**
 	 * @return the next/most important {@link Item} on the priority list;
 	 *         {@code null} if the list is empty
@@ -151,18 +484,73 @@ public class PrioritManager {
 		final String METHOD_NAME = "getNextItem";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME);
 
-		List<Item> items = getAllItems();
-
-		Item item;
-		if (!items.isEmpty())
-			item = items.get(0);
-		else
-			item = null;
+		Item item = getOrderedItems().peek();
+		if (item != null)
+			item = item.copy();
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME, item);
 		return item;
 	}
 
+	/**
+	 * Reloads all {@link Item items} from {@link #directory}. Only needed if the
+	 * files were changed by something else than this manager.
+	 * 
+	 * @throws IOException if not all files are successfully loaded; the
+	 *                     previously loaded {@link Item items} are kept then
+	 */
+	public void reload() throws IOException {
+		Lock lock = closeLock.readLock();
+		lock.lock();
+		try {
+			checkOpen();
+			loadFromFile();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes this manager: waits for running changes and rejects further ones
+	 * ({@link #addItem(Item)} returns {@code false}, {@link #reload()} and
+	 * {@link #importItems(InputStream, boolean)} throw an {@link IOException}).
+	 * Reading stays possible. The subscribers of the
+	 * {@link #getEventPublisher() event publisher} are completed after the
+	 * remaining events and the own threads of the {@link IoExecutor} (if not
+	 * shared) are shut down. Closing again has no effect.
+	 */
+	@Override
+	public void close() {
+		final String METHOD_NAME = "close";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, directory);
+
+		Lock lock = closeLock.writeLock();
+		lock.lock();
+		try {
+			if (!closed) {
+				closed = true;
+				eventPublisher.close();
+				ioExecutor.shutdown();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * @return {@code true}, if {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed)
+			throw new IOException(String.format("Manager of directory=%s is closed", directory));
+	}
+
 	/**
 	 * Search {@link Item items} by {@code text} in uName, title, text and category.
 	 * 
@@ -174,20 +562,32 @@ public class PrioritManager {
 		final String METHOD_NAME = "searchItem";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME, text);
 
+		List<Item> failedItems = new ArrayList<>();
 		List<Item> foundItems = getAllItems().stream()
-				.filter(item -> item.getTitle()
-						.matches(text)
-						|| item.getText()
-								.matches(text)
-						|| item.getuName()
+				.filter(item -> {
+					try {
+						return item.getTitle()
 								.matches(text)
-						|| !item.getCategories()
-								.stream()
-								.filter(c -> c.matches(text))
-								.collect(Collectors.toList())
-								.isEmpty())
+								|| item.getText()
+										.matches(text)
+								|| item.getuName()
+										.matches(text)
+								|| !item.getCategories()
+										.stream()
+										.filter(c -> c.matches(text))
+										.collect(Collectors.toList())
+										.isEmpty();
+					} catch (UncheckedIOException e) {
+						e.printStackTrace();
+						failedItems.add(item);
+						return false;
+					}
+				})
 				.collect(Collectors.toList());
 		LOGGER.log(Level.FINE, "Searching for text={0} found foundItems={1}", new Object[] { text, foundItems });
+		if (!failedItems.isEmpty())
+			LOGGER.log(Level.WARNING, "Searching for text={0} skipped {1} items that can not be loaded: {2}",
+					new Object[] { text, failedItems.size(), failedItems });
 
 		LOGGER.exiting(CLASS_NAME, METHOD_NAME, foundItems);
 		return foundItems;
@@ -217,6 +617,256 @@ public class PrioritManager {
 		return successful;
 	}
 
+	/**
+	 * Changes several {@link Item items} together: {@code change} gets (completely
+	 * loaded) copies of the current versions of the {@link Item items} with
+	 * {@code uNames} and returns the changed {@link Item items} to save, in the
+	 * same order and with the same uNames. The locks of all uNames are held
+	 * meanwhile, so no other change of these {@link Item items} interleaves. If
+	 * one {@link Item} can not be saved, the already saved ones are restored to
+	 * their previous version.
+	 * 
+	 * @param uNames the uNames of the {@link Item items} to change
+	 * @param change changes the {@link Item items}; returns {@code null} to save
+	 *               nothing
+	 * @return {@code true}, if all {@link Item items} were saved; {@code false}
+	 *         if none was saved (or some were saved and could not be restored,
+	 *         which is logged as {@link Level#SEVERE})
+	 * @throws IllegalArgumentException if {@code change} returns other uNames
+	 */
+	public boolean updateItems(List<String> uNames, UnaryOperator<List<Item>> change) {
+		final String METHOD_NAME = "updateItems";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, uNames);
+
+		TreeSet<Integer> lockIndexes = new TreeSet<>();
+		for (String uName : uNames)
+			lockIndexes.add(getUNameLockIndex(uName));
+
+		boolean successful;
+		Lock lock = closeLock.readLock();
+		lock.lock();
+		try {
+			if (closed) {
+				LOGGER.log(Level.WARNING, "Not saving items uNames={0}, manager of directory={1} is closed",
+						new Object[] { uNames, directory });
+				LOGGER.exiting(CLASS_NAME, METHOD_NAME, false);
+				return false;
+			}
+			successful = withUNameLocks(lockIndexes.iterator(), () -> updateOpenItems(uNames, change));
+		} finally {
+			lock.unlock();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, successful);
+		return successful;
+	}
+
+	private boolean updateOpenItems(List<String> uNames, UnaryOperator<List<Item>> change) {
+		List<Item> previousItems = new ArrayList<>(uNames.size());
+		List<Item> currentItems = new ArrayList<>(uNames.size());
+		for (String uName : uNames) {
+			Item previousItem = getOrderedItems().get(uName);
+			if (previousItem != null) {
+				previousItem = previousItem.copy();
+				if (!previousItem.hydrate())
+					return false;
+			}
+			previousItems.add(previousItem);
+			currentItems.add(previousItem == null ? null : previousItem.copy());
+		}
+
+		List<Item> changedItems = change.apply(currentItems);
+		if (changedItems == null)
+			return false;
+		for (int i = 0; i < uNames.size(); i++)
+			if (changedItems.size() != uNames.size() || !uNames.get(i)
+					.equals(changedItems.get(i)
+							.getuName()))
+				throw new IllegalArgumentException(
+						String.format("Changed items=%s do not match uNames=%s", changedItems, uNames));
+
+		for (int i = 0; i < changedItems.size(); i++)
+			if (!addOpenItem(changedItems.get(i), true)) {
+				// restore the already saved ones:
+				boolean restored = true;
+				for (int j = 0; j < i; j++)
+					restored &= previousItems.get(j) != null && addOpenItem(previousItems.get(j), true);
+				if (!restored)
+					LOGGER.log(Level.SEVERE, "Items uNames={0} are saved partially: {1} of {2} are changed",
+							new Object[] { uNames, i, uNames.size() });
+				return false;
+			}
+		return true;
+	}
+
+	/**
+	 * Writes all {@link Item items} as gzip compressed NDJSON (one
+	 * {@link ItemJson} object per line) to {@code outputStream}. The items are
+	 * streamed file by file, so the memory usage does not depend on the size of
+	 * the list. {@code outputStream} is not closed.
+	 * 
+	 * @param outputStream the stream to write to
+	 * @return the number of exported {@link Item items}
+	 * @throws IOException if the stream can not be written or an item file can
+	 *                     not be loaded
+	 */
+	public long exportItems(OutputStream outputStream) throws IOException {
+		final String METHOD_NAME = "exportItems";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(gzipOutputStream, StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+		StringBuilder line = new StringBuilder(256);
+		long[] counter = { 0 };
+		forEachItemFile(path -> {
+			Item item;
+			try {
+				item = loadItemFromFile(path);
+			} catch (XStreamException e) {
+				throw new IOException(String.format("Converting file path=%s failed", path), e);
+			}
+			if (item == null)
+				throw new IOException(String.format("File path=%s contains no item", path));
+
+			line.setLength(0);
+			ItemJson.appendJson(item, line);
+			writer.append(line)
+					.append('\n');
+			counter[0]++;
+		});
+		long count = counter[0];
+		writer.flush();
+		gzipOutputStream.finish();
+		outputStream.flush();
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, count);
+		return count;
+	}
+
+	/**
+	 * Reads {@link Item items} written by {@link #exportItems(OutputStream)} and
+	 * adds them. Lines are read in batches of {@value #IMPORT_BATCH_SIZE}; every
+	 * batch is parsed and saved in parallel. Invalid lines are skipped (and
+	 * logged). {@code inputStream} is not closed.
+	 * 
+	 * @param inputStream          the stream to read from
+	 * @param ignoreAlreadyPresent {@code true}, to overwrite already present
+	 *                             items
+	 * @return the number of imported {@link Item items}
+	 * @throws IOException if the stream can not be read
+	 */
+	public long importItems(InputStream inputStream, boolean ignoreAlreadyPresent) throws IOException {
+		final String METHOD_NAME = "importItems";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, ignoreAlreadyPresent);
+
+		long count = 0;
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new GZIPInputStream(inputStream, BUFFER_SIZE), StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+		List<String> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+		String line;
+		do {
+			line = reader.readLine();
+			if (line != null && !line.trim()
+					.isEmpty())
+				batch.add(line);
+
+			if (batch.size() == IMPORT_BATCH_SIZE || (line == null && !batch.isEmpty())) {
+				checkOpen();
+				AtomicLong added = new AtomicLong();
+				ioExecutor.forEach(batch, json -> {
+					Item item;
+					try {
+						item = ItemJson.fromJson(json);
+					} catch (IllegalArgumentException e) {
+						LOGGER.log(Level.WARNING, "Skipping invalid line={0}: {1}",
+								new Object[] { json, e.getMessage() });
+						return;
+					}
+					if (addItem(item, ignoreAlreadyPresent))
+						added.incrementAndGet();
+				});
+				count += added.get();
+				batch.clear();
+			}
+		} while (line != null);
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, count);
+		return count;
+	}
+
+	/**
+	 * Loads the other fields of the partially loaded {@link Item} with
+	 * {@code uName} (for it and its copies) before its file is replaced, as
+	 * they can not be loaded afterwards. Has to be called with the lock of
+	 * {@code uName}.
+	 * 
+	 * @param uName the uName of the {@link Item} to save
+	 * @return a (completely loaded) copy of the current version of the
+	 *         {@link Item}; {@code null} if it is not present
+	 */
+	private Item loadBeforeReplacing(String uName) {
+		Item previousItem = getOrderedItems().get(uName);
+		if (previousItem == null)
+			return null;
+
+		previousItem = previousItem.copy();
+		if (!previousItem.hydrate())
+			LOGGER.log(Level.WARNING, "Fields of item={0} are lost by replacing its file", previousItem);
+		return previousItem;
+	}
+
+	/**
+	 * Replaces a partially loaded {@link Item} in {@link #orderedItems} by its
+	 * complete version, once it was loaded by one of its copies, so that its file
+	 * is read only once (see {@link ItemXmlReader.LoadListener}). Does nothing if
+	 * the {@link Item} was replaced meanwhile.
+	 * 
+	 * @param hydrator the {@link Item.Hydrator} of the partially loaded
+	 *                 {@link Item}
+	 * @param complete the loaded complete {@link Item}
+	 */
+	private void loaded(Item.Hydrator hydrator, Item complete) {
+		synchronized (indexLock) {
+			Item partialItem = orderedItems.get(complete.getuName());
+			if (partialItem == null || !partialItem.isLoadedBy(hydrator))
+				return;
+
+			Item item = partialItem.copy();
+			item.hydrate(); // (with the already loaded complete item)
+			orderedItems.replace(item);
+			estimatedMemoryUsage.addAndGet(Item.estimateMemoryUsage(item) - Item.estimateMemoryUsage(partialItem));
+		}
+	}
+
+	/**
+	 * Moves a large text of {@link Item item} to the {@link #textStore}.
+	 * 
+	 * @param item the {@link Item} to save
+	 * @return a copy of {@link Item item} referencing its text in the
+	 *         {@link #textStore}; {@link Item item} itself if the text is stored
+	 *         inline; {@code null} if {@link Item item} is partially loaded and
+	 *         its other fields can not be loaded
+	 */
+	private Item toStoredItem(Item item) {
+		if (!item.hydrate())
+			return null;
+		if (item.isTextStoredIn(textStore))
+			return item.withStoredText(item.getTextHash(), textStore);
+
+		String text = item.getText();
+		if (text == null || text.length() < TEXT_BLOB_THRESHOLD)
+			return item;
+		try {
+			return item.withStoredText(textStore.put(text), textStore);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Text of item={0} can not be stored separately, storing it inline", item);
+			e.printStackTrace();
+			return item;
+		}
+	}
+
 	/**
 	 * Saves {@link Item item} to a file in {@link #directory}. Overwrites already
 	 * existing files (useful for updates of items).
@@ -242,17 +892,21 @@ public class PrioritManager {
 		}
 		if (fileOutput != null && !fileOutput.equals("")) {
 
+			// written completely before replacing the item file, so concurrent loads
+			// never read a partial file:
+			Path tempFile = null;
 			FileOutputStream fileOutputStream = null;
 			PrintWriter printWriter = null;
 			try {
-				fileOutputStream = new FileOutputStream(getFileToItem(item));
+				tempFile = Files.createTempFile(directory.toPath(), item.getuName() + "-", TEMP_FILE_ENDING);
+				fileOutputStream = new FileOutputStream(tempFile.toFile());
 				printWriter = new PrintWriter(fileOutputStream);
 				printWriter.println(fileOutput); // here the item is written to disk
 				printWriter.flush();
-
-				LOGGER.log(Level.FINE, "item={0} saved to file", item);
-				successful = true;
-			} catch (FileNotFoundException e) { // should be impossible
+				successful = !printWriter.checkError();
+			} catch (IOException | IllegalArgumentException e) {
+				// (IllegalArgumentException if the uName is no valid file name)
+				LOGGER.log(Level.WARNING, "Error at writing item={0} to a file", item);
 				e.printStackTrace();
 				successful = false;
 			} finally {
@@ -267,6 +921,24 @@ public class PrioritManager {
 					}
 			}
 
+			if (tempFile != null)
+				try {
+					if (successful) {
+						Files.move(tempFile, getFileToItem(item).toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+						LOGGER.log(Level.FINE, "item={0} saved to file", item);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					successful = false;
+				} finally {
+					try {
+						Files.deleteIfExists(tempFile);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+
 		} else {
 			LOGGER.log(Level.WARNING, "Error at converting item={0} to XML: fileOutput={1}",
 					new Object[] { item, fileOutput });
@@ -278,98 +950,310 @@ public class PrioritManager {
 	}
 
 	/**
-	 * Loads {@link Item items} from all files in {@link #directory} and returns
-	 * them as sorted {@link List}.
+	 * Loads {@link Item items} from all files in {@link #directory} and replaces
+	 * {@link #orderedItems} with them.
 	 * 
-	 * @return all {@link Item items} sorted in a {@link List}; the {@link List} is
-	 *         empty, if no items are found
 	 * @throws IOException if one occurs while searching and opening the item files
 	 *                     or not all files are successfully loaded
 	 * 
 	 * @see #ITEM_FILE_ENDING
 	 */
-	private List<Item> loadFromFile() throws IOException {
+	private void loadFromFile() throws IOException {
 		final String METHOD_NAME = "loadFromFile";
 		LOGGER.entering(CLASS_NAME, METHOD_NAME);
 
-		boolean successful = false;
+		List<Item> items;
+		synchronized (loadLock) {
+			long loadStart = System.currentTimeMillis();
+			synchronized (indexLock) {
+				itemsPutDuringLoad = new ArrayList<>();
+			}
+			try {
+				items = loadAllItems();
 
-		final List<Item> items = new ArrayList<>();
+				CalendarQueue loadedItems = new CalendarQueue();
+				long memoryUsage = 0;
+				for (Item item : items) {
+					loadedItems.put(item);
+					memoryUsage += Item.estimateMemoryUsage(item);
+				}
 
-		successful = Files.walk(directory.toPath())
-				.filter(p -> p.toString()
-						.endsWith(ITEM_FILE_ENDING))
-				.filter(path -> { // contains only failed paths afterwards
-					FileInputStream fileInputStream = null;
-					InputStreamReader inputStreamReader = null;
-					BufferedReader bufferedReader = null;
-					try {
-						fileInputStream = new FileInputStream(path.toFile());
-						inputStreamReader = new InputStreamReader(fileInputStream);
-						bufferedReader = new BufferedReader(inputStreamReader);
-
-						StringBuilder fileInput = new StringBuilder();
-						String line;
-						while ((line = bufferedReader.readLine()) != null) {
-							fileInput.append(line)
-									.append(System.lineSeparator());
-						}
-
-						Item item = (Item) xstream.fromXML(fileInput.toString());
-						if (item != null && items.add(item)) {
-							LOGGER.log(Level.FINE, "Loaded item={0} from file", item);
-						} else {
-							LOGGER.log(Level.WARNING,
-									"Can not load item! Converting fileInput={0} to XML returns item={1}",
-									new Object[] { fileInput, item });
-							return true;
-						}
-					} catch (IOException e) {
-						e.printStackTrace();
-						return true;
-					} catch (XStreamException e) {
-						LOGGER.log(Level.WARNING, "Converting fileInput to XML failed (path={0})", path);
-						e.printStackTrace();
-						return true;
-					} finally {
-						if (bufferedReader != null)
-							try {
-								bufferedReader.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-								return true;
-							}
-						if (inputStreamReader != null)
-							try {
-								inputStreamReader.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-								return true;
-							}
-						if (fileInputStream != null)
-							try {
-								fileInputStream.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-								return true;
-							}
+				synchronized (indexLock) {
+					// changes saved while loading may be missing in the loaded files:
+					for (Item item : itemsPutDuringLoad) {
+						Item replacedItem = loadedItems.remove(item.getuName());
+						loadedItems.put(item);
+						memoryUsage += Item.estimateMemoryUsage(item)
+								- (replacedItem == null ? 0 : Item.estimateMemoryUsage(replacedItem));
 					}
-					return false;
-				})
-				.collect(Collectors.toList())
-				.isEmpty();
+					orderedItems = loadedItems;
+					estimatedMemoryUsage.set(memoryUsage);
+					version.incrementAndGet();
+				}
+			} finally {
+				synchronized (indexLock) {
+					itemsPutDuringLoad = null;
+				}
+			}
+
+			removeUnusedBlobs(loadStart - BLOB_TIME_MARGIN);
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, items.size());
+	}
+
+	/**
+	 * Deletes the blobs of the {@link #textStore} that no {@link Item} in
+	 * {@link #orderedItems} references (e.g. the old texts of changed
+	 * {@link Item items}). Only blobs stored before {@code storedBeforeMillis}
+	 * are deleted, as other processes may have saved {@link Item items}
+	 * referencing them after the files were loaded. Failures are only logged.
+	 * 
+	 * @param storedBeforeMillis the time the files were loaded (minus a margin)
+	 */
+	private void removeUnusedBlobs(long storedBeforeMillis) {
+		Lock lock = blobLock.writeLock();
+		lock.lock();
+		try {
+			Set<String> referencedHashes = new HashSet<>();
+			for (Item item : orderedItems.toList()) {
+				String textHash = item.peekTextHash();
+				if (textHash != null)
+					referencedHashes.add(textHash);
+			}
+			int removed = textStore.removeUnreferenced(referencedHashes, storedBeforeMillis);
+			LOGGER.log(Level.FINE, "Removed blobs={0} from directory={1}", new Object[] { removed, directory });
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unused blobs of directory={0} can not be removed", directory);
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Loads {@link Item items} from all files in {@link #directory}, concurrently
+	 * with the {@link #ioExecutor}. Only the fields needed for the order are read
+	 * (see {@link #loadOrderingFields(Path)}).
+	 * 
+	 * @return all loaded {@link Item items}, unsorted
+	 * @throws IOException if one occurs while searching and opening the item files
+	 *                     or not all files are successfully loaded
+	 */
+	private List<Item> loadAllItems() throws IOException {
+		final List<Path> paths = new ArrayList<>();
+		final List<Item> items = Collections.synchronizedList(new ArrayList<>());
+		final List<Path> failedPaths = Collections.synchronizedList(new ArrayList<>());
+
+		forEachItemFile(paths::add);
+		ioExecutor.forEach(paths, path -> {
+			try {
+				Item item = loadOrderingFields(path);
+				if (item != null && items.add(item)) {
+					LOGGER.log(Level.FINE, "Loaded item={0} from file", item);
+				} else {
+					LOGGER.log(Level.WARNING, "Can not load item! Converting file path={0} returns item={1}",
+							new Object[] { path, item });
+					failedPaths.add(path);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				failedPaths.add(path);
+			} catch (XStreamException e) {
+				LOGGER.log(Level.WARNING, "Converting fileInput to XML failed (path={0})", path);
+				e.printStackTrace();
+				failedPaths.add(path);
+			}
+		});
+		boolean successful = failedPaths.isEmpty();
 
 		if (successful)
 			LOGGER.log(Level.FINE, "Successfully loaded all items from directory={0}", directory);
 		else
 			throw new IOException(String.format("Error on loading items from directory=%s", directory));
+		return items;
+	}
 
-		items.sort(null);
+	/**
+	 * Puts {@link Item item} into {@link #orderedItems}, replacing the previous
+	 * version; costs a bucket lookup instead of sorting all {@link Item items}
+	 * again.
+	 * 
+	 * @param item the private copy of the saved {@link Item}
+	 * @return the replaced {@link Item}; {@code null} if there was none
+	 */
+	private Item putOrdered(Item item) {
+		synchronized (indexLock) {
+			Item previousItem = orderedItems.remove(item.getuName());
+			orderedItems.put(item);
+			if (itemsPutDuringLoad != null)
+				itemsPutDuringLoad.add(item);
+			estimatedMemoryUsage.addAndGet(Item.estimateMemoryUsage(item)
+					- (previousItem == null ? 0 : Item.estimateMemoryUsage(previousItem)));
+			version.incrementAndGet();
+			return previousItem;
+		}
+	}
 
-		LOGGER.exiting(CLASS_NAME, METHOD_NAME, items);
+	/**
+	 * @return {@link #orderedItems}, moved to the current day; a new day
+	 *         increments the {@link #version}
+	 */
+	private CalendarQueue getOrderedItems() {
+		int today = (int) LocalDate.now()
+				.toEpochDay();
+		CalendarQueue items = orderedItems;
+		if (items.getToday() != today)
+			synchronized (indexLock) {
+				items = orderedItems;
+				if (items.getToday() != today) {
+					items.advanceTo(today);
+					version.incrementAndGet();
+				}
+			}
 		return items;
 	}
 
+	private Object getUNameLock(String uName) {
+		return uNameLocks[getUNameLockIndex(uName)];
+	}
+
+	private int getUNameLockIndex(String uName) {
+		return (uName.hashCode() & Integer.MAX_VALUE) % uNameLocks.length;
+	}
+
+	/**
+	 * Calls {@code action} with the {@link #uNameLocks} of all
+	 * {@code lockIndexes}, taken in ascending order (so concurrent calls can not
+	 * deadlock).
+	 */
+	private boolean withUNameLocks(Iterator<Integer> lockIndexes, BooleanSupplier action) {
+		if (!lockIndexes.hasNext())
+			return action.getAsBoolean();
+		synchronized (uNameLocks[lockIndexes.next()]) {
+			return withUNameLocks(lockIndexes, action);
+		}
+	}
+
+	/**
+	 * Action on one item file.
+	 */
+	private interface ItemFileAction {
+
+		void accept(Path path) throws IOException;
+
+	}
+
+	/**
+	 * Calls {@code action} for every item file in {@link #directory} (and its
+	 * subdirectories). Files removed while searching (e.g. temporary files of
+	 * concurrent saves) are skipped. Closes all directory handles.
+	 * 
+	 * @param action the action to call
+	 * @throws IOException if one occurs while searching or is thrown by
+	 *                     {@code action}
+	 * 
+	 * @see #ITEM_FILE_ENDING
+	 */
+	private void forEachItemFile(ItemFileAction action) throws IOException {
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				if (file.toString()
+						.endsWith(ITEM_FILE_ENDING))
+					action.accept(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+				if (exception instanceof NoSuchFileException)
+					return FileVisitResult.CONTINUE;
+				throw exception;
+			}
+
+		});
+	}
+
+	/**
+	 * Loads the fields needed for the order and the categories of one
+	 * {@link Item} from the file at {@code path}; the other fields are loaded
+	 * from the file on first access and then kept in {@link #orderedItems} (see
+	 * {@link ItemXmlReader}). Falls back to
+	 * {@link #loadItemFromFile(Path) loading} the complete {@link Item} if the
+	 * file can not be read partially.
+	 * 
+	 * @param path the path of the item file
+	 * @return the partially loaded {@link Item}; may be {@code null} for an empty
+	 *         file
+	 * @throws IOException      if the file can not be read
+	 * @throws XStreamException if the file content is no valid {@link Item}
+	 */
+	private Item loadOrderingFields(Path path) throws IOException {
+		try {
+			Item partialItem = ItemXmlReader.readOrderingFields(path, () -> {
+				try {
+					Item item = loadItemFromFile(path);
+					if (item == null)
+						throw new IOException(String.format("File path=%s contains no item", path));
+					return item;
+				} catch (XStreamException e) {
+					throw new IOException(String.format("Converting file path=%s failed", path), e);
+				}
+			}, this::loaded);
+			partialItem.setTextStore(textStore);
+			return partialItem;
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Can not read file path={0} partially: {1}", new Object[] { path, e });
+			return loadItemFromFile(path);
+		}
+	}
+
+	/**
+	 * Loads one {@link Item} from the file at {@code path}.
+	 * 
+	 * @param path the path of the item file
+	 * @return the loaded {@link Item}; may be {@code null} for an empty file
+	 * @throws IOException      if the file can not be read
+	 * @throws XStreamException if the file content is no valid {@link Item}
+	 */
+	private Item loadItemFromFile(Path path) throws IOException {
+		final String METHOD_NAME = "loadItemFromFile";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, path);
+
+		StringBuilder fileInput = new StringBuilder();
+
+		FileInputStream fileInputStream = null;
+		InputStreamReader inputStreamReader = null;
+		BufferedReader bufferedReader = null;
+		try {
+			fileInputStream = new FileInputStream(path.toFile());
+			inputStreamReader = new InputStreamReader(fileInputStream);
+			bufferedReader = new BufferedReader(inputStreamReader);
+
+			String line;
+			while ((line = bufferedReader.readLine()) != null) {
+				fileInput.append(line)
+						.append(System.lineSeparator());
+			}
+		} finally {
+			if (bufferedReader != null)
+				bufferedReader.close();
+			if (inputStreamReader != null)
+				inputStreamReader.close();
+			if (fileInputStream != null)
+				fileInputStream.close();
+		}
+
+		Item item = (Item) xstream.fromXML(fileInput.toString());
+		if (item != null)
+			item.setTextStore(textStore);
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, item);
+		return item;
+	}
+
 	/**
 	 * Generates a {@link File} in which the {@link Item item} is saved.
 	 * 
@@ -0,0 +1,425 @@
+package voruti.priorit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Manages many priority lists (one {@link PrioritManager} each) inside a
+ * common base directory. Lists are opened lazily on first access and only the
+ * recently used ones are kept resident; the least recently used lists are
+ * evicted when {@link #maxResidentLists} or {@link #maxResidentBytes} is
+ * exceeded (checked on every open and after every change of a list). Not yet
+ * opened lists cost nothing but their directory. Evicted
+ * lists are {@link PrioritManager#close() closed}, so changes through a
+ * {@link PrioritManager} kept by a caller are rejected then instead of being
+ * missed by a later opened one; callers should {@link #get(String)} lists
+ * again instead of keeping them.
+ *
+ * @author voruti
+ */
+public class PrioritManagerRegistry implements Closeable {
+
+	private static final String CLASS_NAME = PrioritManagerRegistry.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Allowed list names; also prevents leaving {@link #baseDirectory}.
+	 */
+	private static final Pattern LIST_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+	/**
+	 * A directory containing one sub directory per list.
+	 */
+	private final File baseDirectory;
+
+	private final int maxResidentLists;
+
+	private final long maxResidentBytes;
+
+	/**
+	 * Thread pool shared by all lists (e.g. to open lists in parallel).
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Runs the file operations of all lists on {@link #executor}.
+	 */
+	private final IoExecutor ioExecutor;
+
+	/**
+	 * The resident lists in access order (least recently used first).
+	 */
+	private final LinkedHashMap<String, PrioritManager> residentLists = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Lists that are being opened right now; used so that concurrent callers do
+	 * not load the same list twice.
+	 */
+	private final Map<String, Future<PrioritManager>> openingLists = new HashMap<>();
+
+	/**
+	 * {@code true}, if {@link #close()} was called.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a new registry.
+	 *
+	 * @param baseDirectory    the directory containing the lists
+	 * @param maxResidentLists the maximum number of lists kept open
+	 * @param maxResidentBytes the maximum estimated heap memory of all open lists
+	 *                         (at least one list is always kept open)
+	 * @throws IOException if the {@link File} is no directory or the
+	 *                     {@code baseDirectory} location cannot be created
+	 */
+	public PrioritManagerRegistry(File baseDirectory, int maxResidentLists, long maxResidentBytes)
+			throws IOException {
+		final String METHOD_NAME = "<init>";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { baseDirectory, maxResidentLists, maxResidentBytes });
+
+		// create directory:
+		try {
+			baseDirectory.mkdirs();
+		} catch (SecurityException e) {
+			throw new IOException(String.format("File baseDirectory=%s could not be created", baseDirectory));
+		}
+		// test if directory:
+		if (!baseDirectory.isDirectory())
+			throw new IOException(String.format("File baseDirectory=%s is no directory", baseDirectory));
+
+		this.baseDirectory = baseDirectory;
+		this.maxResidentLists = Math.max(1, maxResidentLists);
+		this.maxResidentBytes = maxResidentBytes;
+		int threads = Runtime.getRuntime()
+				.availableProcessors();
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "priorit-registry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.ioExecutor = new IoExecutor(executor, threads);
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * @return the baseDirectory
+	 */
+	public File getBaseDirectory() {
+		return baseDirectory;
+	}
+
+	/**
+	 * @return the thread pool shared by all lists of this registry
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return the names of all existing lists (resident or not); determined
+	 *         without opening any list
+	 */
+	public List<String> getListNames() {
+		File[] directories = baseDirectory.listFiles(File::isDirectory);
+		if (directories == null)
+			return new ArrayList<>();
+		return Arrays.stream(directories)
+				.map(File::getName)
+				.filter(name -> LIST_NAME_PATTERN.matcher(name)
+						.matches())
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the names of the currently resident lists, least recently used
+	 *         first
+	 */
+	public synchronized Set<String> getResidentListNames() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(residentLists.keySet()));
+	}
+
+	/**
+	 * @param name the name of the list
+	 * @return {@code true}, if the list is currently open
+	 */
+	public synchronized boolean isResident(String name) {
+		return residentLists.containsKey(name);
+	}
+
+	/**
+	 * Returns the {@link PrioritManager} of list {@code name}. Opens (and if
+	 * needed creates) the list on first access; may evict other lists.
+	 *
+	 * @param name the name of the list
+	 * @return the {@link PrioritManager} of the list
+	 * @throws IOException           if {@code name} is invalid or the list can
+	 *                               not be opened
+	 * @throws IllegalStateException if the registry is closed
+	 */
+	public PrioritManager get(String name) throws IOException {
+		final String METHOD_NAME = "get";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, name);
+
+		if (name == null || !LIST_NAME_PATTERN.matcher(name)
+				.matches())
+			throw new IOException(String.format("List name=%s is invalid", name));
+
+		FutureTask<PrioritManager> ownTask = null;
+		Future<PrioritManager> future;
+		synchronized (this) {
+			checkOpen();
+			PrioritManager manager = residentLists.get(name);
+			if (manager != null) {
+				LOGGER.exiting(CLASS_NAME, METHOD_NAME, manager);
+				return manager;
+			}
+
+			future = openingLists.get(name);
+			if (future == null) {
+				ownTask = new FutureTask<>(() -> new PrioritManager(new File(baseDirectory, name), ioExecutor));
+				openingLists.put(name, ownTask);
+				future = ownTask;
+			}
+		}
+
+		// load outside of the lock, so other lists stay accessible:
+		if (ownTask != null)
+			ownTask.run();
+
+		PrioritManager manager = null;
+		List<PrioritManager> evictedManagers = Collections.emptyList();
+		try {
+			manager = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			throw new IOException(String.format("Interrupted while opening list name=%s", name), e);
+		} catch (ExecutionException e) {
+			throw new IOException(String.format("List name=%s can not be opened", name), e.getCause());
+		} finally {
+			if (ownTask != null)
+				synchronized (this) {
+					openingLists.remove(name);
+					if (manager != null && closed) {
+						// opened while the registry was closed:
+						evictedManagers = Collections.singletonList(manager);
+					} else if (manager != null) {
+						residentLists.put(name, manager);
+						manager.getEventPublisher()
+								.subscribe(new LimitSubscriber(name, manager));
+						LOGGER.log(Level.FINE, "Opened list name={0}", name);
+						evictedManagers = enforceLimits(name);
+					}
+				}
+			// outside of the lock, as closing waits for running changes:
+			evictedManagers.forEach(PrioritManager::close);
+		}
+		synchronized (this) {
+			checkOpen();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, manager);
+		return manager;
+	}
+
+	/**
+	 * Opens the lists {@code names} in parallel on the shared thread pool (the
+	 * files of each list are then read by the opening thread).
+	 *
+	 * @param names the names of the lists to open
+	 * @throws IOException           if one of the lists can not be opened
+	 * @throws IllegalStateException if the registry is closed
+	 */
+	public void preload(List<String> names) throws IOException {
+		ioExecutor.forEach(names, this::get);
+	}
+
+	/**
+	 * Evicts and {@link PrioritManager#close() closes} list {@code name}; the
+	 * data stays on disk.
+	 *
+	 * @param name the name of the list
+	 * @return {@code true}, if the list was resident
+	 */
+	public boolean evict(String name) {
+		PrioritManager manager;
+		synchronized (this) {
+			manager = residentLists.remove(name);
+		}
+		if (manager == null)
+			return false;
+		manager.close();
+		LOGGER.log(Level.FINE, "Evicted list name={0}", name);
+		return true;
+	}
+
+	/**
+	 * @param name the name of the list
+	 * @return the estimated heap memory of list {@code name} in bytes; {@code 0}
+	 *         if the list is not resident
+	 *
+	 * @see PrioritManager#getEstimatedMemoryUsage()
+	 */
+	public synchronized long getMemoryUsage(String name) {
+		PrioritManager manager = residentLists.get(name);
+		return manager == null ? 0 : manager.getEstimatedMemoryUsage();
+	}
+
+	/**
+	 * @return the estimated heap memory of every resident list in bytes
+	 */
+	public synchronized Map<String, Long> getMemoryUsages() {
+		Map<String, Long> usages = new LinkedHashMap<>();
+		residentLists.forEach((name, manager) -> usages.put(name, manager.getEstimatedMemoryUsage()));
+		return usages;
+	}
+
+	/**
+	 * @return the estimated heap memory of all resident lists in bytes
+	 */
+	public synchronized long getTotalMemoryUsage() {
+		return residentLists.values()
+				.stream()
+				.mapToLong(PrioritManager::getEstimatedMemoryUsage)
+				.sum();
+	}
+
+	/**
+	 * Evicts and closes all lists and shuts down the shared thread pool. Lists
+	 * can not be opened anymore afterwards. Closing again has no effect.
+	 */
+	@Override
+	public void close() {
+		List<PrioritManager> managers;
+		synchronized (this) {
+			closed = true;
+			managers = new ArrayList<>(residentLists.values());
+			residentLists.clear();
+		}
+		managers.forEach(PrioritManager::close);
+		executor.shutdown();
+	}
+
+	/**
+	 * @throws IllegalStateException if the registry is closed
+	 */
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException(
+					String.format("Registry of baseDirectory=%s is closed", baseDirectory));
+	}
+
+	/**
+	 * Enforces the limits after a change of list {@code name}. The change does
+	 * not count as an access (the events are delivered asynchronously), but the
+	 * changed list is not evicted. Does nothing if the list was evicted
+	 * meanwhile.
+	 *
+	 * @param name    the name of the changed list
+	 * @param manager the {@link PrioritManager} of the list
+	 */
+	private void changed(String name, PrioritManager manager) {
+		List<PrioritManager> evictedManagers = Collections.emptyList();
+		synchronized (this) {
+			// (containsValue does not change the access order)
+			if (residentLists.containsValue(manager))
+				evictedManagers = enforceLimits(name);
+		}
+		evictedManagers.forEach(PrioritManager::close);
+	}
+
+	/**
+	 * Evicts least recently used lists until the limits are met again. The list
+	 * {@code keep} is never evicted. The evicted lists have to be closed by the
+	 * caller.
+	 *
+	 * @param keep the name of the list that was just accessed
+	 * @return the evicted lists
+	 */
+	private List<PrioritManager> enforceLimits(String keep) {
+		List<PrioritManager> evictedManagers = new ArrayList<>();
+		long totalBytes = getTotalMemoryUsage();
+		Iterator<Map.Entry<String, PrioritManager>> iterator = residentLists.entrySet()
+				.iterator();
+		while (iterator.hasNext() && (residentLists.size() > maxResidentLists || totalBytes > maxResidentBytes)) {
+			Map.Entry<String, PrioritManager> eldest = iterator.next();
+			if (eldest.getKey()
+					.equals(keep))
+				continue;
+
+			totalBytes -= eldest.getValue()
+					.getEstimatedMemoryUsage();
+			iterator.remove();
+			evictedManagers.add(eldest.getValue());
+			LOGGER.log(Level.FINE, "Evicted list name={0}", eldest.getKey());
+		}
+		return evictedManagers;
+	}
+
+	/**
+	 * Checks the limits after every change of one resident list.
+	 */
+	private final class LimitSubscriber implements ItemEventPublisher.Subscriber {
+
+		private final String name;
+
+		private final PrioritManager manager;
+
+		private LimitSubscriber(String name, PrioritManager manager) {
+			this.name = name;
+			this.manager = manager;
+		}
+
+		@Override
+		public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(ItemEvent event) {
+			changed(name, manager);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (throwable instanceof ItemEventPublisher.EventsLostException) {
+				// only the current size matters, the lost events are not needed:
+				changed(name, manager);
+				if (!manager.isClosed())
+					manager.getEventPublisher()
+							.subscribe(this);
+			} else {
+				LOGGER.log(Level.WARNING, String.format("Limit subscription of list name=%s failed", name), throwable);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			LOGGER.log(Level.FINE, "List name={0} was closed", name);
+		}
+
+	}
+
+}
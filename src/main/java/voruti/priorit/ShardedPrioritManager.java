@@ -0,0 +1,493 @@
+package voruti.priorit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Spreads the {@link Item items} of one priority list over several
+ * directories (e.g. on different disks). Every directory is handled by its own
+ * {@link PrioritManager}, the {@link Item items} are partitioned by the hash
+ * of their uName. Shards are loaded in parallel and the per-shard sorted
+ * results are combined with a k-way merge.
+ *
+ * @author voruti
+ */
+public class ShardedPrioritManager implements Closeable {
+
+	private static final String CLASS_NAME = ShardedPrioritManager.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	private static final String ITEM_FILE_ENDING = ".xml";
+
+	/**
+	 * Finds the reference to a separately stored text in an item file.
+	 */
+	private static final Pattern TEXT_HASH_PATTERN = Pattern.compile("<textHash>([0-9a-f]+)</textHash>");
+
+	/**
+	 * One manager per directory; the index is the shard number.
+	 */
+	private final List<PrioritManager> shards;
+
+	private final ExecutorService executor;
+
+	/**
+	 * {@code true}, if {@link #executor} was created by this manager and has to be
+	 * shut down on {@link #close()}.
+	 */
+	private final boolean ownExecutor;
+
+	/**
+	 * Creates a new sharded manager with one shard per directory and an own
+	 * thread pool (shut down again if a shard can not be created).
+	 *
+	 * @param directories the directories to save all data in; the order defines
+	 *                    the shard numbers and has to stay the same between runs
+	 * @throws IOException if one of the shards can not be created
+	 */
+	public ShardedPrioritManager(List<File> directories) throws IOException {
+		this(directories, Executors.newFixedThreadPool(Math.max(1, directories.size()), r -> {
+			Thread thread = new Thread(r, "priorit-shard");
+			thread.setDaemon(true);
+			return thread;
+		}), true);
+	}
+
+	/**
+	 * Creates a new sharded manager with one shard per directory.
+	 *
+	 * @param directories the directories to save all data in; the order defines
+	 *                    the shard numbers and has to stay the same between runs
+	 * @param executor    the {@link ExecutorService} used to access the shards in
+	 *                    parallel; it is not shut down by {@link #close()}
+	 * @throws IOException if one of the shards can not be created
+	 */
+	public ShardedPrioritManager(List<File> directories, ExecutorService executor) throws IOException {
+		this(directories, executor, false);
+	}
+
+	private ShardedPrioritManager(List<File> directories, ExecutorService executor, boolean ownExecutor)
+			throws IOException {
+		final String METHOD_NAME = "<init>";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, directories);
+
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+
+		try {
+			if (directories.isEmpty())
+				throw new IOException("At least one directory is needed");
+
+			this.shards = Collections.unmodifiableList(createShards(directories));
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * @return the directories of all shards, ordered by shard number
+	 */
+	public List<File> getDirectories() {
+		return shards.stream()
+				.map(PrioritManager::getDirectory)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the number of shards
+	 */
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * Saves/Adds an {@link Item} to the priority list.
+	 *
+	 * @param item the {@link Item} to add
+	 * @return {@code true}, if the {@link Item} was successfully saved;
+	 *         {@code false} otherwise
+	 *
+	 * @see PrioritManager#addItem(Item)
+	 */
+	public boolean addItem(Item item) {
+		return getShard(item).addItem(item);
+	}
+
+	/**
+	 * Saves/Adds an {@link Item} to the priority list.
+	 *
+	 * @param item                 the {@link Item} to add
+	 * @param ignoreAlreadyPresent {@code true}, to overwrite already present item
+	 *                             files
+	 * @return {@code true}, if the {@link Item} was successfully saved;
+	 *         {@code false} otherwise
+	 *
+	 * @see PrioritManager#addItem(Item, boolean)
+	 */
+	public boolean addItem(Item item, boolean ignoreAlreadyPresent) {
+		return getShard(item).addItem(item, ignoreAlreadyPresent);
+	}
+
+	/**
+	 * Updates already present {@link Item} (identified by uName) or adds it.
+	 *
+	 * @param item the {@link Item} to update or add
+	 * @return {@code true}, if the update or adding was successful, {@code false}
+	 *         otherwise
+	 *
+	 * @see PrioritManager#updateItem(Item)
+	 */
+	public boolean updateItem(Item item) {
+		return getShard(item).updateItem(item);
+	}
+
+	/**
+	 * Loads all shards in parallel and merges their sorted lists.
+	 *
+	 * @return all saved {@link Item items}; sorted by priority (most important
+	 *         {@link Item} first); is empty if the items can not be loaded
+	 */
+	public List<Item> getAllItems() {
+		final String METHOD_NAME = "getAllItems";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		List<Item> items = new ArrayList<>();
+		try {
+			items = merge(invokeAll(shards.stream()
+					.map(shard -> (Callable<List<Item>>) shard::getAllItems)
+					.collect(Collectors.toList())));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Item list can not be obtained");
+			e.printStackTrace();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, items);
+		return items;
+	}
+
+	/**
+	 * @return the next/most important {@link Item} of all shards; {@code null}
+	 *         if the list is empty
+	 */
+	public Item getNextItem() {
+		final String METHOD_NAME = "getNextItem";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		Item item = null;
+		try {
+			for (Item candidate : invokeAll(shards.stream()
+					.map(shard -> (Callable<Item>) shard::getNextItem)
+					.collect(Collectors.toList()))) {
+				if (candidate != null && (item == null || candidate.compareTo(item) < 0))
+					item = candidate;
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Next item can not be obtained");
+			e.printStackTrace();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, item);
+		return item;
+	}
+
+	/**
+	 * Search {@link Item items} by {@code text} in all shards.
+	 *
+	 * @param text the keyword or regEx to search for
+	 * @return the wanted {@link Item items} as sorted {@link List}; if no
+	 *         {@link Item} is found, the {@link List} is empty
+	 *
+	 * @see PrioritManager#searchItem(String)
+	 */
+	public List<Item> searchItem(String text) {
+		final String METHOD_NAME = "searchItem";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, text);
+
+		List<Item> foundItems = new ArrayList<>();
+		try {
+			foundItems = merge(invokeAll(shards.stream()
+					.map(shard -> (Callable<List<Item>>) () -> shard.searchItem(text))
+					.collect(Collectors.toList())));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Searching for text={0} failed", text);
+			e.printStackTrace();
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, foundItems);
+		return foundItems;
+	}
+
+	/**
+	 * {@link PrioritManager#close() Closes} all shards and shuts down the own
+	 * thread pool (if any). The data stays on disk.
+	 */
+	@Override
+	public void close() {
+		// (no shards yet if called by a failed constructor)
+		if (shards != null)
+			shards.forEach(PrioritManager::close);
+		if (ownExecutor)
+			executor.shutdown();
+	}
+
+	/**
+	 * Moves all item files from {@code oldDirectories} (and their
+	 * subdirectories) to the shard they belong to in {@code newDirectories}.
+	 * Needed after changing the number (or order) of shards. Files are moved
+	 * without parsing them. Afterwards, separately stored texts no longer used in
+	 * an old directory are deleted, as well as old directories left empty.
+	 *
+	 * @param oldDirectories the directories of the previous shard layout
+	 * @param newDirectories the directories of the new shard layout; may overlap
+	 *                       with {@code oldDirectories}
+	 * @return the number of moved item files
+	 * @throws IOException if a directory can not be created or read or a file can
+	 *                     not be moved
+	 */
+	public static int rebalance(List<File> oldDirectories, List<File> newDirectories) throws IOException {
+		final String METHOD_NAME = "rebalance";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { oldDirectories, newDirectories });
+
+		if (newDirectories.isEmpty())
+			throw new IOException("At least one new directory is needed");
+		for (File directory : newDirectories) {
+			directory.mkdirs();
+			if (!directory.isDirectory())
+				throw new IOException(String.format("File directory=%s is no directory", directory));
+		}
+
+		int moved = 0;
+		for (File oldDirectory : oldDirectories) {
+			if (!oldDirectory.isDirectory())
+				continue;
+
+			List<Path> files = findItemFiles(oldDirectory);
+
+			for (Path file : files) {
+				String fileName = file.getFileName()
+						.toString();
+				String uName = fileName.substring(0, fileName.length() - ITEM_FILE_ENDING.length());
+				Path target = newDirectories.get(shardIndex(uName, newDirectories.size()))
+						.toPath()
+						.resolve(fileName);
+
+				if (!Files.isSameFile(file.getParent(), target.getParent())) {
+					// a separately stored text has to be available in the new directory:
+					Matcher matcher = TEXT_HASH_PATTERN
+							.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+					if (matcher.find()) {
+						// (items of subdirectories may have their own text store)
+						Path blobDirectory = file.getParent()
+								.resolve(PrioritManager.BLOB_DIRECTORY);
+						if (!Files.isDirectory(blobDirectory))
+							blobDirectory = oldDirectory.toPath()
+									.resolve(PrioritManager.BLOB_DIRECTORY);
+						new TextBlobStore(blobDirectory.toFile()).copyTo(matcher.group(1),
+								new TextBlobStore(target.getParent()
+										.resolve(PrioritManager.BLOB_DIRECTORY)
+										.toFile()));
+					}
+					Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+					LOGGER.log(Level.FINE, "Moved file={0} to target={1}", new Object[] { file, target });
+					moved++;
+				}
+			}
+		}
+
+		for (File oldDirectory : oldDirectories)
+			if (oldDirectory.isDirectory())
+				removeLeftovers(oldDirectory, newDirectories.contains(oldDirectory));
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, moved);
+		return moved;
+	}
+
+	/**
+	 * @param directory the directory to search
+	 * @return all item files in {@code directory} and its subdirectories
+	 * @throws IOException if {@code directory} can not be read
+	 */
+	private static List<Path> findItemFiles(File directory) throws IOException {
+		try (Stream<Path> stream = Files.walk(directory.toPath())) {
+			return stream.filter(p -> p.toString()
+					.endsWith(ITEM_FILE_ENDING) && Files.isRegularFile(p))
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Deletes the separately stored texts of {@code directory} that no remaining
+	 * item file references, and the empty subdirectories; deletes
+	 * {@code directory} itself if it is no longer used and empty.
+	 *
+	 * @param directory the directory of an old shard
+	 * @param inUse     {@code true} if {@code directory} is still a shard
+	 * @throws IOException if a file can not be read or deleted
+	 */
+	private static void removeLeftovers(File directory, boolean inUse) throws IOException {
+		Set<String> referencedHashes = new HashSet<>();
+		for (Path file : findItemFiles(directory)) {
+			Matcher matcher = TEXT_HASH_PATTERN.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			if (matcher.find())
+				referencedHashes.add(matcher.group(1));
+		}
+		int removed = new TextBlobStore(new File(directory, PrioritManager.BLOB_DIRECTORY))
+				.removeUnreferenced(referencedHashes);
+		LOGGER.log(Level.FINE, "Removed blobs={0} from directory={1}", new Object[] { removed, directory });
+
+		// directories emptied by moving their item files:
+		Path root = directory.toPath();
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder())
+					.collect(Collectors.toList())) {
+				String[] entries = path.toFile()
+						.list();
+				if (entries != null && entries.length == 0 && (!inUse || !path.equals(root)))
+					Files.delete(path);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the shard an {@link Item} with {@code uName} belongs to.
+	 *
+	 * @param uName      the uName of the {@link Item}
+	 * @param shardCount the number of shards
+	 * @return the shard number
+	 */
+	static int shardIndex(String uName, int shardCount) {
+		return Math.floorMod(uName.hashCode(), shardCount);
+	}
+
+	/**
+	 * Merges already sorted {@link List lists} into one sorted {@link List}.
+	 *
+	 * @param sortedLists the sorted {@link List lists} to merge
+	 * @return the merged {@link List}
+	 */
+	static List<Item> merge(List<List<Item>> sortedLists) {
+		final String METHOD_NAME = "merge";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		int size = 0;
+		// cursor: [list index, position in list]
+		PriorityQueue<int[]> queue = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+				(a, b) -> sortedLists.get(a[0])
+						.get(a[1])
+						.compareTo(sortedLists.get(b[0])
+								.get(b[1])));
+		for (int i = 0; i < sortedLists.size(); i++) {
+			size += sortedLists.get(i)
+					.size();
+			if (!sortedLists.get(i)
+					.isEmpty())
+				queue.add(new int[] { i, 0 });
+		}
+
+		List<Item> merged = new ArrayList<>(size);
+		while (!queue.isEmpty()) {
+			int[] cursor = queue.poll();
+			List<Item> list = sortedLists.get(cursor[0]);
+			merged.add(list.get(cursor[1]));
+			if (++cursor[1] < list.size())
+				queue.add(cursor);
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, merged);
+		return merged;
+	}
+
+	private PrioritManager getShard(Item item) {
+		return shards.get(shardIndex(item.getuName(), shards.size()));
+	}
+
+	/**
+	 * Runs all {@code tasks} on {@link #executor} and waits for their results.
+	 *
+	 * @param tasks the tasks to run
+	 * @return the results in the order of {@code tasks}
+	 * @throws IOException if one of the tasks failed or the waiting was
+	 *                     interrupted
+	 */
+	/**
+	 * Creates/Loads all shards in parallel. If one of them fails, the already
+	 * created ones are closed again.
+	 */
+	private List<PrioritManager> createShards(List<File> directories) throws IOException {
+		List<Future<PrioritManager>> futures = new ArrayList<>(directories.size());
+		for (File directory : directories)
+			futures.add(executor.submit(() -> new PrioritManager(directory)));
+
+		List<PrioritManager> created = new ArrayList<>(directories.size());
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (Future<PrioritManager> future : futures) {
+			// (wait for every shard, so none is left open)
+			while (true) {
+				try {
+					created.add(future.get());
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause();
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread()
+					.interrupt();
+
+		if (failure != null || interrupted) {
+			created.forEach(PrioritManager::close);
+			if (failure == null)
+				throw new IOException("Interrupted while creating the shards");
+			throw new IOException("Error on creating a shard", failure);
+		}
+		return created;
+	}
+
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<>(tasks.size());
+		try {
+			for (Future<T> future : executor.invokeAll(tasks))
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			throw new IOException("Interrupted while accessing the shards", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Error on accessing a shard", e.getCause());
+		}
+		return results;
+	}
+
+}
@@ -0,0 +1,230 @@
+package voruti.priorit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content addressed store of (large) {@link Item#getText() item texts}. Every
+ * text is stored once, Deflate compressed, in a file named by the SHA-256 hash
+ * of its UTF-8 bytes:
+ *
+ * <pre>
+ * directory/ab/abcdef....deflate
+ * </pre>
+ *
+ * The content of the files is never changed after they are written, so they
+ * can be read without locking. Storing a text that is already stored updates
+ * the modification time of its file, so that a blob is only unused if it is
+ * not referenced and was not stored since the references were collected (see
+ * {@link #removeUnreferenced(Set, long)}).
+ *
+ * @author voruti
+ */
+final class TextBlobStore {
+
+	/**
+	 * File ending of the blobs (must not be the one of the item files).
+	 */
+	static final String BLOB_FILE_ENDING = ".deflate";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * A SHA-256 hash as returned by {@link #hash(byte[])}.
+	 */
+	private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+	private final File directory;
+
+	/**
+	 * @param directory the directory to store the blobs in; created on the first
+	 *                  {@link #put(String)}
+	 */
+	TextBlobStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Stores {@code text}, if it is not stored yet.
+	 *
+	 * @param text the text to store
+	 * @return the hash to {@link #get(String) get} {@code text} with
+	 * @throws IOException if the blob can not be written
+	 */
+	String put(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		String hash = hash(bytes);
+		Path path = getPath(hash);
+		if (Files.exists(path))
+			try {
+				// (referenced again, see removeUnreferenced)
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+				return hash;
+			} catch (NoSuchFileException e) {
+				// removed concurrently, store it again
+			}
+
+		Files.createDirectories(path.getParent());
+		Path tempPath = Files.createTempFile(path.getParent(), hash, ".tmp");
+		try {
+			try (OutputStream outputStream = new DeflaterOutputStream(Files.newOutputStream(tempPath))) {
+				outputStream.write(bytes);
+			}
+			try {
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (FileAlreadyExistsException e) {
+				// stored concurrently
+			}
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+		return hash;
+	}
+
+	/**
+	 * @param hash the hash returned by {@link #put(String)}
+	 * @return the stored text
+	 * @throws IOException if the blob can not be read
+	 */
+	String get(String hash) throws IOException {
+		try (InputStream inputStream = new InflaterInputStream(Files.newInputStream(getPath(hash)))) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = inputStream.read(buffer)) >= 0)
+				outputStream.write(buffer, 0, read);
+			return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Copies the blob with {@code hash} to {@code target}, if it is not there
+	 * yet.
+	 *
+	 * @param hash   the hash returned by {@link #put(String)}
+	 * @param target the {@link TextBlobStore} to copy to
+	 * @throws IOException if the blob can not be copied
+	 */
+	void copyTo(String hash, TextBlobStore target) throws IOException {
+		Path targetPath = target.getPath(hash);
+		if (Files.exists(targetPath))
+			return;
+		Files.createDirectories(targetPath.getParent());
+		try {
+			Files.copy(getPath(hash), targetPath);
+		} catch (FileAlreadyExistsException e) {
+			// copied concurrently
+		}
+	}
+
+	/**
+	 * Deletes all blobs whose hash is not in {@code referencedHashes}, and the
+	 * directories left empty.
+	 *
+	 * @param referencedHashes the hashes of the blobs to keep
+	 * @return the number of deleted blobs
+	 * @throws IOException if a blob can not be deleted
+	 */
+	int removeUnreferenced(Set<String> referencedHashes) throws IOException {
+		return removeUnreferenced(referencedHashes, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Deletes all blobs whose hash is not in {@code referencedHashes} and which
+	 * were last stored before {@code storedBeforeMillis}, and the directories
+	 * left empty. Blobs stored later may be referenced by items saved after the
+	 * references were collected (e.g. by another process).
+	 *
+	 * @param referencedHashes   the hashes of the blobs to keep
+	 * @param storedBeforeMillis the time the collection of the references started
+	 *                           in milliseconds since the epoch
+	 * @return the number of deleted blobs
+	 * @throws IOException if a blob can not be deleted
+	 */
+	int removeUnreferenced(Set<String> referencedHashes, long storedBeforeMillis) throws IOException {
+		if (!directory.isDirectory())
+			return 0;
+
+		int[] removed = { 0 };
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				String fileName = file.getFileName()
+						.toString();
+				if (fileName.endsWith(BLOB_FILE_ENDING)
+						&& !referencedHashes
+								.contains(fileName.substring(0, fileName.length() - BLOB_FILE_ENDING.length()))
+						&& attributes.lastModifiedTime()
+								.toMillis() < storedBeforeMillis) {
+					Files.delete(file);
+					removed[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exception) throws IOException {
+				if (exception != null)
+					throw exception;
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+					if (!entries.iterator()
+							.hasNext())
+						Files.delete(dir);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+		});
+		return removed[0];
+	}
+
+	/**
+	 * @throws IOException if {@code hash} is no hash returned by
+	 *                     {@link #put(String)} (e.g. read from a manipulated
+	 *                     item file), so no path outside of {@link #directory}
+	 *                     is used
+	 */
+	private Path getPath(String hash) throws IOException {
+		if (hash == null || !HASH_PATTERN.matcher(hash)
+				.matches())
+			throw new IOException(String.format("Invalid text hash=%s", hash));
+		return new File(new File(directory, hash.substring(0, 2)), hash + BLOB_FILE_ENDING).toPath();
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256")
+					.digest(bytes);
+			char[] hex = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+				hex[2 * i + 1] = HEX[digest[i] & 0xf];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package voruti.priorit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique, ascending uNames in the established format
+ * {@code <timestamp>_<three digits>}. Instead of a random suffix, a counter
+ * (100 to 999) is used per millisecond; if it runs out, the following
+ * millisecond is used. So uNames from one JVM never collide, even under bulk
+ * creation.
+ *
+ * @author voruti
+ */
+final class UNameGenerator {
+
+	private static final int SUFFIX_MIN = 100;
+	private static final int SUFFIX_RANGE = 1000;
+
+	/**
+	 * The last generated uName as {@code timestamp * 1000 + suffix}.
+	 */
+	private static final AtomicLong LAST = new AtomicLong();
+
+	private UNameGenerator() {
+	}
+
+	/**
+	 * Generates the next uName.
+	 *
+	 * @param timestamp the wanted time stamp; a later one is used, if all
+	 *                  suffixes of it are taken
+	 * @return the uName; greater than all uNames generated before (also when
+	 *         compared as {@link String} of equal length)
+	 */
+	static String next(long timestamp) {
+		long packed = LAST.updateAndGet(last -> {
+			long next = last + 1;
+			if (next % SUFFIX_RANGE < SUFFIX_MIN)
+				next += SUFFIX_MIN;
+			return Math.max(next, timestamp * SUFFIX_RANGE + SUFFIX_MIN);
+		});
+		return (packed / SUFFIX_RANGE) + "_" + (packed % SUFFIX_RANGE);
+	}
+
+}
@@ -0,0 +1,374 @@
+package voruti.priorit.analytics;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import voruti.priorit.Item;
+import voruti.priorit.Priority;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Immutable column-wise projection of many {@link Item items} for reports
+ * (e.g. "how many HIGH items are overdue, per category"). Every row is one
+ * {@link Item}; the columns are primitive arrays (ETA as epoch day, priority
+ * ordinal) and bitmaps (done flag, one bitmap per category).
+ * <p>
+ * Filters return bitmaps ({@code long[]}, bit {@code row % 64} of word
+ * {@code row / 64}), which are combined with {@link #and(long[], long[])},
+ * {@link #or(long[], long[])} and {@link #andNot(long[], long[])} and
+ * aggregated with {@link #count(long[])}, {@link #countByCategory(long[])} and
+ * {@link #countByPriority(long[])}. Large tables are processed in parallel
+ * chunks.
+ *
+ * @author voruti
+ */
+public final class ItemTable {
+
+	/**
+	 * Number of bitmap words per chunk of a parallel pass.
+	 */
+	private static final int CHUNK_WORDS = 1 << 10;
+
+	private final int size;
+	private final int words;
+
+	private final String[] uNames;
+	/**
+	 * ETA of each row as epoch day (system time zone).
+	 */
+	private final int[] etaDays;
+	/**
+	 * {@link Priority#ordinal()} of each row.
+	 */
+	private final byte[] priorities;
+	private final long[] done;
+	/**
+	 * Sorted names of all categories.
+	 */
+	private final String[] categoryNames;
+	/**
+	 * One bitmap per entry of {@link #categoryNames}.
+	 */
+	private final long[][] categoryBitmaps;
+
+	/**
+	 * Fills the words {@code [fromWord, toWord)} of a bitmap.
+	 */
+	private interface WordRange {
+
+		void fill(long[] bitmap, int fromWord, int toWord);
+
+	}
+
+	ItemTable(String[] uNames, int[] etaDays, byte[] priorities, long[] done, String[] categoryNames,
+			long[][] categoryBitmaps) {
+		this.size = uNames.length;
+		this.words = wordCount(size);
+		this.uNames = uNames;
+		this.etaDays = etaDays;
+		this.priorities = priorities;
+		this.done = done;
+		this.categoryNames = categoryNames;
+		this.categoryBitmaps = categoryBitmaps;
+	}
+
+	/**
+	 * @param items the {@link Item items}; the rows have their order
+	 * @return the table of {@link Item items}
+	 */
+	public static ItemTable of(Collection<Item> items) {
+		int size = items.size();
+		String[] uNames = new String[size];
+		int[] etaDays = new int[size];
+		byte[] priorities = new byte[size];
+		long[] done = new long[wordCount(size)];
+		Map<String, long[]> categories = new TreeMap<>();
+
+		int row = 0;
+		for (Item item : items) {
+			uNames[row] = item.getuName();
+			etaDays[row] = (int) item.getEtaDate()
+					.toInstant()
+					.atZone(ZoneId.systemDefault())
+					.toLocalDate()
+					.toEpochDay();
+			priorities[row] = (byte) item.getPriority()
+					.ordinal();
+			if (item.isDone())
+				done[row >>> 6] |= 1L << row;
+			for (String category : item.getCategories())
+				categories.computeIfAbsent(category, c -> new long[wordCount(size)])[row >>> 6] |= 1L << row;
+			row++;
+		}
+
+		return new ItemTable(uNames, etaDays, priorities, done, categories.keySet()
+				.toArray(new String[0]),
+				categories.values()
+						.toArray(new long[0][]));
+	}
+
+	/**
+	 * @param prioritManager the {@link PrioritManager}
+	 * @return the table of all {@link PrioritManager#getAllItems() items} of
+	 *         {@code prioritManager}, in their order
+	 */
+	public static ItemTable of(PrioritManager prioritManager) {
+		return of(prioritManager.getAllItems());
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param row the row
+	 * @return the uName of the {@link Item} in {@code row}
+	 */
+	public String getuName(int row) {
+		return uNames[row];
+	}
+
+	/**
+	 * @param row the row
+	 * @return the ETA of the {@link Item} in {@code row} as epoch day
+	 */
+	public int getEtaDay(int row) {
+		return etaDays[row];
+	}
+
+	/**
+	 * @param row the row
+	 * @return the {@link Priority} of the {@link Item} in {@code row}
+	 */
+	public Priority getPriority(int row) {
+		return Priority.values()[priorities[row]];
+	}
+
+	/**
+	 * @param row the row
+	 * @return the done flag of the {@link Item} in {@code row}
+	 */
+	public boolean isDone(int row) {
+		return (done[row >>> 6] & 1L << row) != 0;
+	}
+
+	/**
+	 * @return the sorted names of all categories
+	 */
+	public List<String> getCategories() {
+		return Arrays.asList(categoryNames.clone());
+	}
+
+	/**
+	 * @return a bitmap of all rows
+	 */
+	public long[] all() {
+		long[] bitmap = new long[words];
+		Arrays.fill(bitmap, -1L);
+		if ((size & 63) != 0)
+			bitmap[words - 1] = (1L << size) - 1;
+		return bitmap;
+	}
+
+	/**
+	 * @return a bitmap of the done rows
+	 */
+	public long[] done() {
+		return done.clone();
+	}
+
+	/**
+	 * @param priority the {@link Priority}
+	 * @return a bitmap of the rows with {@code priority}
+	 */
+	public long[] withPriority(Priority priority) {
+		byte ordinal = (byte) priority.ordinal();
+		return build((bitmap, from, to) -> {
+			for (int word = from; word < to; word++) {
+				int base = word << 6;
+				int end = Math.min(64, size - base);
+				long bits = 0;
+				for (int bit = 0; bit < end; bit++)
+					bits |= (priorities[base + bit] == ordinal ? 1L : 0L) << bit;
+				bitmap[word] = bits;
+			}
+		});
+	}
+
+	/**
+	 * @param fromDay the first epoch day (inclusive)
+	 * @param toDay   the last epoch day (inclusive)
+	 * @return a bitmap of the rows with an ETA between {@code fromDay} and
+	 *         {@code toDay}
+	 */
+	public long[] etaBetween(int fromDay, int toDay) {
+		return build((bitmap, from, to) -> {
+			for (int word = from; word < to; word++) {
+				int base = word << 6;
+				int end = Math.min(64, size - base);
+				long bits = 0;
+				for (int bit = 0; bit < end; bit++) {
+					int etaDay = etaDays[base + bit];
+					bits |= (etaDay >= fromDay && etaDay <= toDay ? 1L : 0L) << bit;
+				}
+				bitmap[word] = bits;
+			}
+		});
+	}
+
+	/**
+	 * @param today the current day as epoch day
+	 * @return a bitmap of the rows that are not done and have an ETA before
+	 *         {@code today}
+	 */
+	public long[] overdue(int today) {
+		return andNot(etaBetween(Integer.MIN_VALUE, today - 1), done);
+	}
+
+	/**
+	 * @param category the name of the category
+	 * @return a bitmap of the rows with {@code category}
+	 */
+	public long[] withCategory(String category) {
+		int index = Arrays.binarySearch(categoryNames, category);
+		return index < 0 ? new long[words] : categoryBitmaps[index].clone();
+	}
+
+	/**
+	 * @param a a bitmap
+	 * @param b another bitmap of the same table
+	 * @return a new bitmap of the rows in {@code a} and {@code b}
+	 */
+	public static long[] and(long[] a, long[] b) {
+		long[] result = new long[a.length];
+		for (int i = 0; i < result.length; i++)
+			result[i] = a[i] & b[i];
+		return result;
+	}
+
+	/**
+	 * @param a a bitmap
+	 * @param b another bitmap of the same table
+	 * @return a new bitmap of the rows in {@code a} or {@code b}
+	 */
+	public static long[] or(long[] a, long[] b) {
+		long[] result = new long[a.length];
+		for (int i = 0; i < result.length; i++)
+			result[i] = a[i] | b[i];
+		return result;
+	}
+
+	/**
+	 * @param a a bitmap
+	 * @param b another bitmap of the same table
+	 * @return a new bitmap of the rows in {@code a} but not in {@code b}
+	 */
+	public static long[] andNot(long[] a, long[] b) {
+		long[] result = new long[a.length];
+		for (int i = 0; i < result.length; i++)
+			result[i] = a[i] & ~b[i];
+		return result;
+	}
+
+	/**
+	 * @param bitmap a bitmap
+	 * @return the number of rows in {@code bitmap}
+	 */
+	public static long count(long[] bitmap) {
+		long count = 0;
+		for (long word : bitmap)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * @param bitmap a bitmap
+	 * @return the number of rows in {@code bitmap} per category (all categories,
+	 *         sorted by name)
+	 */
+	public Map<String, Long> countByCategory(long[] bitmap) {
+		long[] counts = new long[categoryNames.length];
+		IntStream categories = IntStream.range(0, categoryNames.length);
+		if (words > CHUNK_WORDS)
+			categories = categories.parallel();
+		categories.forEach(c -> {
+			long[] categoryBitmap = categoryBitmaps[c];
+			long count = 0;
+			for (int i = 0; i < words; i++)
+				count += Long.bitCount(bitmap[i] & categoryBitmap[i]);
+			counts[c] = count;
+		});
+
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (int c = 0; c < categoryNames.length; c++)
+			result.put(categoryNames[c], counts[c]);
+		return result;
+	}
+
+	/**
+	 * @param bitmap a bitmap
+	 * @return the number of rows in {@code bitmap} per {@link Priority} (by
+	 *         {@link Priority#ordinal()})
+	 */
+	public long[] countByPriority(long[] bitmap) {
+		int priorityCount = Priority.values().length;
+		int chunks = (words + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		long[][] chunkCounts = new long[chunks][priorityCount];
+		IntStream chunkStream = IntStream.range(0, chunks);
+		if (chunks > 1)
+			chunkStream = chunkStream.parallel();
+		chunkStream.forEach(chunk -> {
+			long[] counts = chunkCounts[chunk];
+			for (int word = chunk * CHUNK_WORDS; word < Math.min(words, (chunk + 1) * CHUNK_WORDS); word++)
+				for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+					counts[priorities[(word << 6) + Long.numberOfTrailingZeros(bits)]]++;
+		});
+
+		long[] counts = new long[priorityCount];
+		for (long[] chunk : chunkCounts)
+			for (int p = 0; p < priorityCount; p++)
+				counts[p] += chunk[p];
+		return counts;
+	}
+
+	/**
+	 * @param bitmap a bitmap
+	 * @return the rows in {@code bitmap}, ascending
+	 */
+	public int[] rows(long[] bitmap) {
+		int[] rows = new int[(int) count(bitmap)];
+		int i = 0;
+		for (int word = 0; word < bitmap.length; word++)
+			for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+				rows[i++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+		return rows;
+	}
+
+	/**
+	 * Builds a bitmap with {@code range}, in parallel chunks for large tables.
+	 */
+	private long[] build(WordRange range) {
+		long[] bitmap = new long[words];
+		int chunks = (words + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		IntStream chunkStream = IntStream.range(0, chunks);
+		if (chunks > 1)
+			chunkStream = chunkStream.parallel();
+		chunkStream.forEach(chunk -> range.fill(bitmap, chunk * CHUNK_WORDS,
+				Math.min(words, (chunk + 1) * CHUNK_WORDS)));
+		return bitmap;
+	}
+
+	private static int wordCount(int size) {
+		return (size + 63) >>> 6;
+	}
+
+}
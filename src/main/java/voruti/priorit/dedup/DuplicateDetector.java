@@ -0,0 +1,370 @@
+package voruti.priorit.dedup;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import voruti.priorit.Item;
+import voruti.priorit.ItemEvent;
+import voruti.priorit.ItemEventPublisher;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Finds {@link Item items} with (nearly) the same title and text. Every
+ * indexed {@link Item} gets a {@link MinHasher MinHash} signature, which is
+ * split into {@value #BANDS} bands; {@link Item items} sharing at least one
+ * band (locality sensitive hashing) are candidates, which are confirmed by
+ * comparing their whole signatures. Finding the duplicates of one
+ * {@link Item} therefore only looks at a few candidates instead of all
+ * {@link Item items}.
+ * <p>
+ * {@link Item Items} that are done are not indexed, so merged duplicates (see
+ * {@link #merge(PrioritManager, Item, Item)}) are not found again.
+ *
+ * @author voruti
+ */
+public class DuplicateDetector implements Closeable {
+
+	private static final String CLASS_NAME = DuplicateDetector.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Default minimum estimated similarity of duplicates.
+	 */
+	public static final double DEFAULT_THRESHOLD = 0.8;
+
+	private static final int BANDS = 20;
+	private static final int ROWS = 5;
+	private static final int SHINGLE_SIZE = 4;
+	private static final long SEED = 0x5eed;
+
+	private final MinHasher minHasher = new MinHasher(BANDS * ROWS, SHINGLE_SIZE, SEED);
+
+	private final double threshold;
+
+	/**
+	 * The signatures by uName.
+	 */
+	private final Map<String, int[]> signatures = new HashMap<>();
+
+	/**
+	 * Per band: the uNames by band hash.
+	 */
+	private final List<Map<Long, Set<String>>> bandIndex = new ArrayList<>(BANDS);
+
+	private volatile ItemEventPublisher.Subscription subscription;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a detector using {@value #DEFAULT_THRESHOLD} as threshold.
+	 */
+	public DuplicateDetector() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param threshold the minimum estimated similarity ({@code 0} to {@code 1})
+	 *                  of the shingles of two {@link Item items} to count as
+	 *                  duplicates; values below {@code 0.6} miss many candidates
+	 */
+	public DuplicateDetector(double threshold) {
+		if (threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("threshold has to be in (0, 1]");
+		this.threshold = threshold;
+		for (int i = 0; i < BANDS; i++)
+			bandIndex.add(new HashMap<>());
+	}
+
+	/**
+	 * Indexes all {@link Item items} of {@code prioritManager} and keeps the
+	 * index current with its {@link PrioritManager#getEventPublisher() events}
+	 * until {@link #close()}.
+	 *
+	 * @param prioritManager the {@link PrioritManager} to follow
+	 */
+	public void follow(PrioritManager prioritManager) {
+		ItemEventPublisher.Subscription previous = subscription;
+		if (previous != null)
+			previous.cancel();
+
+		ItemEventPublisher publisher = prioritManager.getEventPublisher();
+		long fromSequence = publisher.getLastSequence() + 1;
+		addAll(prioritManager.getAllItems());
+		publisher.subscribe(new IndexSubscriber(prioritManager), fromSequence);
+	}
+
+	/**
+	 * Adds or replaces all {@link Item items}.
+	 *
+	 * @param items the {@link Item items}
+	 */
+	public void addAll(Collection<Item> items) {
+		for (Item item : items)
+			add(item);
+	}
+
+	/**
+	 * Adds {@link Item item} to the index or replaces its previous version; done
+	 * {@link Item items} are removed instead.
+	 *
+	 * @param item the {@link Item}
+	 * @return the uNames of the already indexed duplicates of {@link Item item}
+	 */
+	public synchronized List<String> add(Item item) {
+		remove(item.getuName());
+		if (item.isDone())
+			return new ArrayList<>();
+
+		int[] signature = minHasher.signature(textOf(item));
+		if (signature == null)
+			return new ArrayList<>();
+
+		List<String> duplicates = findDuplicates(item.getuName(), signature);
+		signatures.put(item.getuName(), signature);
+		for (int band = 0; band < BANDS; band++)
+			bandIndex.get(band)
+					.computeIfAbsent(bandHash(signature, band), k -> new LinkedHashSet<>())
+					.add(item.getuName());
+
+		if (!duplicates.isEmpty())
+			LOGGER.log(Level.FINE, "item={0} has duplicates={1}", new Object[] { item, duplicates });
+		return duplicates;
+	}
+
+	/**
+	 * @param uName the uName of the {@link Item} to remove from the index
+	 * @return {@code true} if it was indexed
+	 */
+	public synchronized boolean remove(String uName) {
+		int[] signature = signatures.remove(uName);
+		if (signature == null)
+			return false;
+
+		for (int band = 0; band < BANDS; band++) {
+			Map<Long, Set<String>> buckets = bandIndex.get(band);
+			long hash = bandHash(signature, band);
+			Set<String> bucket = buckets.get(hash);
+			bucket.remove(uName);
+			if (bucket.isEmpty())
+				buckets.remove(hash);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of indexed {@link Item items}
+	 */
+	public synchronized int size() {
+		return signatures.size();
+	}
+
+	/**
+	 * Finds the indexed duplicates of {@link Item item} without indexing it.
+	 *
+	 * @param item the {@link Item}
+	 * @return the uNames of the duplicates, most similar first
+	 */
+	public synchronized List<String> getDuplicates(Item item) {
+		int[] signature = minHasher.signature(textOf(item));
+		if (signature == null)
+			return new ArrayList<>();
+		return findDuplicates(item.getuName(), signature);
+	}
+
+	/**
+	 * Groups all indexed {@link Item items} having duplicates. Only
+	 * {@link Item items} sharing a band are compared.
+	 *
+	 * @return the groups of uNames (each sorted; at least two per group)
+	 */
+	public synchronized List<List<String>> getDuplicateGroups() {
+		Map<String, String> parents = new HashMap<>();
+		for (Map<Long, Set<String>> buckets : bandIndex)
+			for (Set<String> bucket : buckets.values()) {
+				if (bucket.size() < 2)
+					continue;
+				List<String> uNames = new ArrayList<>(bucket);
+				for (int i = 0; i < uNames.size(); i++)
+					for (int j = i + 1; j < uNames.size(); j++)
+						if (!find(parents, uNames.get(i)).equals(find(parents, uNames.get(j)))
+								&& MinHasher.similarity(signatures.get(uNames.get(i)),
+										signatures.get(uNames.get(j))) >= threshold)
+							parents.put(find(parents, uNames.get(i)), find(parents, uNames.get(j)));
+			}
+
+		Map<String, Set<String>> groups = new HashMap<>();
+		for (String uName : new ArrayList<>(parents.keySet()))
+			groups.computeIfAbsent(find(parents, uName), k -> new TreeSet<>())
+					.add(uName);
+		List<List<String>> result = new ArrayList<>();
+		for (Set<String> group : groups.values())
+			if (group.size() > 1)
+				result.add(new ArrayList<>(group));
+		result.sort((a, b) -> a.get(0)
+				.compareTo(b.get(0)));
+		return result;
+	}
+
+	/**
+	 * Merges {@link Item duplicate} into {@link Item kept}: {@code kept} gets the
+	 * categories of both, the more important priority, the earlier etaDate and
+	 * the text of {@code duplicate} if it has none. {@code duplicate} is marked
+	 * as done. The current versions of both (identified by uName) are merged and
+	 * saved together with {@link PrioritManager#updateItems(List,
+	 * java.util.function.UnaryOperator)}, so either both or none are changed;
+	 * the given {@link Item items} are not changed. Both are re-indexed if they
+	 * were saved.
+	 *
+	 * @param prioritManager the {@link PrioritManager} of both {@link Item items}
+	 * @param kept           the {@link Item} to keep
+	 * @param duplicate      the {@link Item} to merge into {@code kept}
+	 * @return {@code true} if both were saved successfully
+	 */
+	public boolean merge(PrioritManager prioritManager, Item kept, Item duplicate) {
+		final String METHOD_NAME = "merge";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { kept, duplicate });
+
+		List<Item> savedItems = new ArrayList<>();
+		boolean successful = prioritManager.updateItems(Arrays.asList(kept.getuName(), duplicate.getuName()),
+				items -> {
+					Item merged = items.get(0);
+					Item done = items.get(1);
+					if (merged == null || done == null)
+						return null; // (not saved)
+					merge(merged, done);
+					savedItems.addAll(items);
+					return items;
+				});
+		if (successful) {
+			savedItems.forEach(this::add);
+		} else {
+			LOGGER.log(Level.WARNING, "Merging duplicate={0} into kept={1} failed", new Object[] { duplicate, kept });
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, successful);
+		return successful;
+	}
+
+	private static void merge(Item merged, Item done) {
+		Set<String> categories = new TreeSet<>(merged.getCategories());
+		categories.addAll(done.getCategories());
+		if (categories.size() > 1)
+			categories.remove("none"); // default category
+		merged.setCategories(new ArrayList<>(categories));
+		if (done.getPriority()
+				.getValue() < merged.getPriority()
+						.getValue())
+			merged.setPriority(done.getPriority());
+		if (done.getEtaDate()
+				.before(merged.getEtaDate()))
+			merged.setEtaDate(done.getEtaDate());
+		if (merged.getText() == null || merged.getText()
+				.isEmpty())
+			merged.setText(done.getText());
+		done.setDone(true);
+	}
+
+	/**
+	 * Stops following the {@link PrioritManager}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ItemEventPublisher.Subscription current = subscription;
+		if (current != null)
+			current.cancel();
+	}
+
+	private List<String> findDuplicates(String uName, int[] signature) {
+		Set<String> candidates = new LinkedHashSet<>();
+		for (int band = 0; band < BANDS; band++) {
+			Set<String> bucket = bandIndex.get(band)
+					.get(bandHash(signature, band));
+			if (bucket != null)
+				candidates.addAll(bucket);
+		}
+		candidates.remove(uName);
+
+		Map<String, Double> similarities = new HashMap<>();
+		for (String candidate : candidates) {
+			double similarity = MinHasher.similarity(signature, signatures.get(candidate));
+			if (similarity >= threshold)
+				similarities.put(candidate, similarity);
+		}
+		List<String> duplicates = new ArrayList<>(similarities.keySet());
+		duplicates.sort((a, b) -> Double.compare(similarities.get(b), similarities.get(a)));
+		return duplicates;
+	}
+
+	private static long bandHash(int[] signature, int band) {
+		long hash = band;
+		for (int i = band * ROWS; i < (band + 1) * ROWS; i++)
+			hash = hash * 0x9E3779B97F4A7C15L + signature[i];
+		return hash;
+	}
+
+	private static String find(Map<String, String> parents, String uName) {
+		String root = uName;
+		String parent;
+		while ((parent = parents.get(root)) != null && !parent.equals(root))
+			root = parent;
+		parents.put(uName, root);
+		parents.putIfAbsent(root, root);
+		return root;
+	}
+
+	private static String textOf(Item item) {
+		String text = item.getText();
+		return text == null ? item.getTitle() : item.getTitle() + "\n" + text;
+	}
+
+	private final class IndexSubscriber implements ItemEventPublisher.Subscriber {
+
+		private final PrioritManager prioritManager;
+
+		private IndexSubscriber(PrioritManager prioritManager) {
+			this.prioritManager = prioritManager;
+		}
+
+		@Override
+		public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+			DuplicateDetector.this.subscription = subscription;
+			if (closed)
+				subscription.cancel();
+			else
+				subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(ItemEvent event) {
+			add(event.getItem());
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (!closed && throwable instanceof ItemEventPublisher.EventsLostException) {
+				LOGGER.log(Level.INFO, "Duplicate detector fell behind, indexing all items again");
+				follow(prioritManager);
+			} else {
+				LOGGER.log(Level.WARNING, "Duplicate detector subscription failed", throwable);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			LOGGER.log(Level.FINE, "Event publisher closed");
+		}
+
+	}
+
+}
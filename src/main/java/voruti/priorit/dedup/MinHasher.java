@@ -0,0 +1,122 @@
+package voruti.priorit.dedup;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Computes MinHash signatures of texts: the text is normalized (lower case,
+ * every run of other characters than letters and digits becomes one space)
+ * and split into overlapping character shingles. For each of the
+ * {@link #getNumHashes()} hash functions the signature holds the minimum hash
+ * over all shingles. The fraction of equal signature entries of two texts
+ * estimates the Jaccard similarity of their shingle sets.
+ *
+ * @author voruti
+ */
+public final class MinHasher {
+
+	private final int shingleSize;
+
+	private final int[] multipliers;
+	private final int[] addends;
+
+	/**
+	 * @param numHashes   the length of the signatures
+	 * @param shingleSize the number of characters per shingle
+	 * @param seed        the seed of the hash functions; signatures are only
+	 *                    comparable if created with the same seed
+	 */
+	public MinHasher(int numHashes, int shingleSize, long seed) {
+		if (numHashes < 1 || shingleSize < 1)
+			throw new IllegalArgumentException("numHashes and shingleSize have to be positive");
+		this.shingleSize = shingleSize;
+		this.multipliers = new int[numHashes];
+		this.addends = new int[numHashes];
+		Random random = new Random(seed);
+		for (int i = 0; i < numHashes; i++) {
+			multipliers[i] = random.nextInt() | 1;
+			addends[i] = random.nextInt();
+		}
+	}
+
+	/**
+	 * @return the length of the signatures
+	 */
+	public int getNumHashes() {
+		return multipliers.length;
+	}
+
+	/**
+	 * @param text the text
+	 * @return the signature of {@code text}; {@code null} if it contains no
+	 *         letters or digits
+	 */
+	public int[] signature(String text) {
+		String normalized = normalize(text);
+		if (normalized.isEmpty())
+			return null;
+
+		int[] signature = new int[multipliers.length];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		int shingles = Math.max(1, normalized.length() - shingleSize + 1);
+		for (int start = 0; start < shingles; start++) {
+			int end = Math.min(normalized.length(), start + shingleSize);
+			int shingle = 0;
+			for (int i = start; i < end; i++)
+				shingle = 31 * shingle + normalized.charAt(i);
+
+			for (int i = 0; i < signature.length; i++) {
+				int hash = mix(shingle * multipliers[i] + addends[i]);
+				if (hash < signature[i])
+					signature[i] = hash;
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * @param a a signature
+	 * @param b another signature of the same length
+	 * @return the estimated Jaccard similarity ({@code 0} to {@code 1})
+	 */
+	public static double similarity(int[] a, int[] b) {
+		int equal = 0;
+		for (int i = 0; i < a.length; i++)
+			if (a[i] == b[i])
+				equal++;
+		return (double) equal / a.length;
+	}
+
+	private static String normalize(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		boolean space = true; // no leading space
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				builder.append(c);
+				space = false;
+			} else if (!space) {
+				builder.append(' ');
+				space = true;
+			}
+		}
+		if (space && builder.length() > 0)
+			builder.setLength(builder.length() - 1);
+		return builder.toString()
+				.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Finalizer of MurmurHash3.
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+}
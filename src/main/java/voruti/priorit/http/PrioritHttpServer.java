@@ -0,0 +1,309 @@
+package voruti.priorit.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import voruti.priorit.IoExecutor;
+import voruti.priorit.Item;
+import voruti.priorit.ItemJson;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Read-only HTTP/JSON access to a {@link PrioritManager}, based on the JDK
+ * internal {@link HttpServer} (no further dependencies). Endpoints:
+ * <ul>
+ * <li>{@code GET /items/next} - the next item</li>
+ * <li>{@code GET /items/top?k=10} - the {@code k} most important items</li>
+ * <li>{@code GET /items/search?q=regEx} - see
+ * {@link PrioritManager#searchItem(String)}</li>
+ * <li>{@code GET /items/category?name=c} - all items of a category</li>
+ * </ul>
+ * Responses are cached per request and tagged with an ETag derived from
+ * {@link PrioritManager#getVersion()} and the current day; they are recomputed
+ * only after the list changed or the day rolled over (which changes the
+ * order). Clients sending a matching {@code If-None-Match} get
+ * {@code 304 Not Modified}.
+ *
+ * @author voruti
+ */
+public class PrioritHttpServer implements Closeable {
+
+	private static final String CLASS_NAME = PrioritHttpServer.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	private static final String CONTEXT = "/items";
+
+	/**
+	 * Maximum number of cached responses.
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	private final PrioritManager prioritManager;
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	/**
+	 * Cached responses by path and query, least recently used first.
+	 */
+	private final Map<String, Response> cache = new LinkedHashMap<String, Response>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	/**
+	 * A computed response.
+	 */
+	private static final class Response {
+
+		private final int status;
+		private final String etag;
+		private final byte[] body;
+
+		private Response(int status, String etag, byte[] body) {
+			this.status = status;
+			this.etag = etag;
+			this.body = body;
+		}
+
+	}
+
+	/**
+	 * Creates (but does not start) a server.
+	 *
+	 * @param prioritManager the {@link PrioritManager} to serve
+	 * @param address        the address to listen on; port {@code 0} picks a
+	 *                       free port
+	 * @param threads        the maximum number of concurrently handled requests
+	 *                       (if no virtual threads are available)
+	 * @throws IOException if the server can not be bound
+	 */
+	public PrioritHttpServer(PrioritManager prioritManager, InetSocketAddress address, int threads)
+			throws IOException {
+		final String METHOD_NAME = "<init>";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { prioritManager, address, threads });
+
+		this.prioritManager = prioritManager;
+		this.executor = createExecutor(threads);
+		this.server = HttpServer.create(address, 0);
+		this.server.setExecutor(executor);
+		this.server.createContext(CONTEXT, this::handle);
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+		LOGGER.log(Level.INFO, "Listening on address={0}", server.getAddress());
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return server.getAddress()
+				.getPort();
+	}
+
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * @return the number of requests that had to be computed
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * Stops the server and its threads.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		final String METHOD_NAME = "handle";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, exchange.getRequestURI());
+
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, null, error("only GET is supported"));
+				return;
+			}
+
+			String key = exchange.getRequestURI()
+					.getPath() + "?"
+					+ exchange.getRequestURI()
+							.getRawQuery();
+			// the order (and therefore every response) also changes with the day:
+			String etag = String.format("\"v%d-d%d-%08x\"", prioritManager.getVersion(), LocalDate.now()
+					.toEpochDay(), key.hashCode());
+
+			if (etag.equals(exchange.getRequestHeaders()
+					.getFirst("If-None-Match"))) {
+				cacheHits.incrementAndGet();
+				exchange.getResponseHeaders()
+						.set("ETag", etag);
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			Response response;
+			synchronized (cache) {
+				response = cache.get(key);
+			}
+			if (response != null && response.etag.equals(etag)) {
+				cacheHits.incrementAndGet();
+			} else {
+				cacheMisses.incrementAndGet();
+				response = compute(exchange, etag);
+				if (response.status == 200)
+					synchronized (cache) {
+						cache.put(key, response);
+					}
+			}
+
+			send(exchange, response.status, response.status == 200 ? response.etag : null, response.body);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Error on handling request={0}", exchange.getRequestURI());
+			e.printStackTrace();
+			send(exchange, 500, null, error("internal error"));
+		} finally {
+			exchange.close();
+			LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+		}
+	}
+
+	private Response compute(HttpExchange exchange, String etag) {
+		Map<String, String> parameters = parseQuery(exchange.getRequestURI()
+				.getRawQuery());
+
+		switch (exchange.getRequestURI()
+				.getPath()) {
+		case CONTEXT + "/next":
+			Item next = prioritManager.getNextItem();
+			if (next == null)
+				return new Response(404, etag, error("list is empty"));
+			return new Response(200, etag, utf8(ItemJson.toJson(next)));
+
+		case CONTEXT + "/top":
+			int k;
+			try {
+				k = Integer.parseInt(parameters.getOrDefault("k", "10"));
+			} catch (NumberFormatException e) {
+				return new Response(400, etag, error("k has to be a number"));
+			}
+			if (k < 0)
+				return new Response(400, etag, error("k must not be negative"));
+			return new Response(200, etag, utf8(ItemJson.toJson(prioritManager.getTopItems(k))));
+
+		case CONTEXT + "/search":
+			String query = parameters.get("q");
+			if (query == null)
+				return new Response(400, etag, error("parameter q is missing"));
+			try {
+				return new Response(200, etag, utf8(ItemJson.toJson(prioritManager.searchItem(query))));
+			} catch (PatternSyntaxException e) {
+				return new Response(400, etag, error("q is no valid regEx"));
+			}
+
+		case CONTEXT + "/category":
+			String category = parameters.get("name");
+			if (category == null)
+				return new Response(400, etag, error("parameter name is missing"));
+			return new Response(200, etag, utf8(ItemJson.toJson(prioritManager.getAllItems()
+					.stream()
+					.filter(item -> item.getCategories()
+							.contains(category))
+					.collect(Collectors.toList()))));
+
+		default:
+			return new Response(404, etag, error("unknown endpoint"));
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String etag, byte[] body) throws IOException {
+		exchange.getResponseHeaders()
+				.set("Content-Type", "application/json; charset=utf-8");
+		if (etag != null)
+			exchange.getResponseHeaders()
+					.set("ETag", etag);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> parameters = new HashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty())
+			return parameters;
+		for (String pair : rawQuery.split("&")) {
+			int separator = pair.indexOf('=');
+			try {
+				if (separator < 0)
+					parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+				else
+					parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+							URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+			} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+				LOGGER.log(Level.FINE, "Ignoring invalid query parameter={0}", pair);
+			}
+		}
+		return parameters;
+	}
+
+	private static byte[] error(String message) {
+		return utf8("{\"error\":\"" + message + "\"}");
+	}
+
+	private static byte[] utf8(String string) {
+		return string.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Uses one virtual thread per request if the JVM supports it (Java 21+),
+	 * otherwise a bounded pool of {@code threads} threads; if its queue is full,
+	 * the accepting thread handles the request itself (backpressure).
+	 */
+	private static ExecutorService createExecutor(int threads) {
+		return IoExecutor.newExecutor(threads, "priorit-http", threads * 16);
+	}
+
+}
@@ -0,0 +1,108 @@
+package voruti.priorit.replication;
+
+import java.io.File;
+
+import voruti.priorit.Item;
+import voruti.priorit.ItemJson;
+
+/**
+ * Format of the change log written by {@link ChangeLogWriter} and read by
+ * {@link PrioritFollower}. The log is a UTF-8 text file with one record per
+ * line:
+ *
+ * <pre>
+ * #priorit-changelog &lt;session&gt;
+ * &lt;sequence&gt;\t&lt;timestamp&gt;\t&lt;item JSON&gt;
+ * ...
+ * </pre>
+ *
+ * Every record contains the complete {@link Item} after the change (see
+ * {@link ItemJson}), so applying a record twice does no harm. A new session
+ * (of a new {@link ChangeLogWriter} or to compact the log) starts with a new
+ * header and a snapshot of all {@link Item items}; it atomically replaces the
+ * log.
+ *
+ * @author voruti
+ */
+final class ChangeLog {
+
+	/**
+	 * Name of the log file inside the item directory (not ending with
+	 * {@code .xml}, so it is not loaded as an {@link Item}).
+	 */
+	static final String FILE_NAME = "changes.log";
+
+	static final String HEADER_PREFIX = "#priorit-changelog ";
+
+	private ChangeLog() {
+	}
+
+	/**
+	 * @param directory the item directory
+	 * @return the log file of {@code directory}
+	 */
+	static File getFile(File directory) {
+		return new File(directory, FILE_NAME);
+	}
+
+	/**
+	 * @param session the session id of the writer
+	 * @return the header line (with line break)
+	 */
+	static String header(String session) {
+		return HEADER_PREFIX + session + "\n";
+	}
+
+	/**
+	 * @param sequence  the sequence number of the record
+	 * @param timestamp the time the record was written
+	 * @param item      the changed {@link Item}
+	 * @return the record line (with line break)
+	 */
+	static String record(long sequence, long timestamp, Item item) {
+		StringBuilder builder = new StringBuilder(160);
+		builder.append(sequence)
+				.append('\t')
+				.append(timestamp)
+				.append('\t');
+		ItemJson.appendJson(item, builder);
+		return builder.append('\n')
+				.toString();
+	}
+
+	/**
+	 * A parsed record line.
+	 */
+	static final class Record {
+
+		final long sequence;
+		final long timestamp;
+		final Item item;
+
+		private Record(long sequence, long timestamp, Item item) {
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+			this.item = item;
+		}
+
+		/**
+		 * @param line the record line (without line break)
+		 * @return the parsed record
+		 * @throws IllegalArgumentException if {@code line} is no valid record
+		 */
+		static Record parse(String line) {
+			int first = line.indexOf('\t');
+			int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+			if (second < 0)
+				throw new IllegalArgumentException(String.format("Invalid change log record=%s", line));
+			try {
+				return new Record(Long.parseLong(line.substring(0, first)),
+						Long.parseLong(line.substring(first + 1, second)), ItemJson.fromJson(line.substring(second + 1)));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Invalid change log record=%s", line), e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,256 @@
+package voruti.priorit.replication;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import voruti.priorit.Item;
+import voruti.priorit.ItemEvent;
+import voruti.priorit.ItemEventPublisher;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Leader side of the log shipping: appends every change published by a
+ * {@link PrioritManager} (see {@link PrioritManager#getEventPublisher()}) to
+ * the change log in its directory, so {@link PrioritFollower followers} in
+ * other processes can keep their items current without parsing the item
+ * files.
+ * <p>
+ * There must be only one writer (and only one writing {@link PrioritManager})
+ * per directory. The log is compacted by starting a new session (a snapshot
+ * of all {@link Item items} followed by the later changes) once it grows
+ * beyond {@link #getMaxLogSize()} and twice the size of its snapshot; the
+ * same is done instead of the lost events if the writer falls too far behind.
+ * New sessions are written to a temporary file that atomically replaces the
+ * log, so followers never read a partially written session.
+ *
+ * @author voruti
+ */
+public class ChangeLogWriter implements Closeable {
+
+	private static final String CLASS_NAME = ChangeLogWriter.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Default size (in characters) from which the change log is compacted.
+	 */
+	public static final long DEFAULT_MAX_LOG_SIZE = 64L << 20;
+
+	private final PrioritManager leader;
+
+	private final long maxLogSize;
+
+	/**
+	 * Writes the current session.
+	 */
+	private Writer writer;
+
+	/**
+	 * The sequence number of the last written record of the current session.
+	 */
+	private long sequence = 0;
+
+	/**
+	 * Characters written to the current session.
+	 */
+	private long logSize = 0;
+
+	/**
+	 * Characters of the snapshot at the start of the current session.
+	 */
+	private long snapshotSize = 0;
+
+	private volatile ItemEventPublisher.Subscription subscription;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Starts a new session compacted at {@value #DEFAULT_MAX_LOG_SIZE}
+	 * characters.
+	 *
+	 * @param leader the writing {@link PrioritManager}
+	 * @throws IOException if the change log can not be written
+	 *
+	 * @see #ChangeLogWriter(PrioritManager, long)
+	 */
+	public ChangeLogWriter(PrioritManager leader) throws IOException {
+		this(leader, DEFAULT_MAX_LOG_SIZE);
+	}
+
+	/**
+	 * Starts a new session: replaces the change log of {@code leader} by a
+	 * snapshot of all its {@link Item items} and appends all following changes.
+	 *
+	 * @param leader     the writing {@link PrioritManager}
+	 * @param maxLogSize the size (in characters) from which the change log is
+	 *                   compacted
+	 * @throws IOException if the change log can not be written
+	 */
+	public ChangeLogWriter(PrioritManager leader, long maxLogSize) throws IOException {
+		final String METHOD_NAME = "<init>";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { leader, maxLogSize });
+
+		this.leader = leader;
+		this.maxLogSize = maxLogSize;
+		startSessionAndSubscribe();
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * @return the sequence number of the last written record of the current
+	 *         session
+	 */
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the size (in characters) from which the change log is compacted
+	 */
+	public long getMaxLogSize() {
+		return maxLogSize;
+	}
+
+	/**
+	 * Stops writing; the change log stays for the followers.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		ItemEventPublisher.Subscription current = subscription;
+		if (current != null)
+			current.cancel();
+		synchronized (this) {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Starts a new session and subscribes to the changes made since then.
+	 * Changes made while writing the snapshot are written again afterwards,
+	 * which is harmless as records contain the whole {@link Item}.
+	 */
+	private void startSessionAndSubscribe() throws IOException {
+		ItemEventPublisher publisher = leader.getEventPublisher();
+		long fromSequence = publisher.getLastSequence() + 1;
+		startSession();
+		publisher.subscribe(new LogSubscriber(), fromSequence);
+	}
+
+	/**
+	 * Writes a new session header and all current {@link Item items} to a
+	 * temporary file, which then replaces the change log. Following records are
+	 * appended to it.
+	 */
+	private synchronized void startSession() throws IOException {
+		final String METHOD_NAME = "startSession";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		File logFile = ChangeLog.getFile(leader.getDirectory());
+		File tempFile = new File(logFile.getPath() + ".tmp");
+		Writer newWriter = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8));
+		try {
+			String header = ChangeLog.header(UUID.randomUUID()
+					.toString());
+			newWriter.write(header);
+			long size = header.length();
+			long newSequence = 0;
+			for (Item item : leader.getAllItems()) {
+				newSequence++;
+				size += write(newWriter, newSequence, item);
+			}
+			newWriter.flush();
+			Files.move(tempFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+
+			if (writer != null)
+				writer.close();
+			writer = newWriter;
+			sequence = newSequence;
+			logSize = size;
+			snapshotSize = size;
+		} catch (IOException e) {
+			newWriter.close();
+			Files.deleteIfExists(tempFile.toPath());
+			throw e;
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, sequence);
+	}
+
+	/**
+	 * @return the number of written characters
+	 */
+	private static int write(Writer writer, long sequence, Item item) throws IOException {
+		String record = ChangeLog.record(sequence, System.currentTimeMillis(), item);
+		writer.write(record);
+		return record.length();
+	}
+
+	private final class LogSubscriber implements ItemEventPublisher.Subscriber {
+
+		@Override
+		public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+			ChangeLogWriter.this.subscription = subscription;
+			if (closed)
+				subscription.cancel();
+			else
+				subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(ItemEvent event) {
+			try {
+				synchronized (ChangeLogWriter.this) {
+					if (closed)
+						return;
+					sequence++;
+					logSize += write(writer, sequence, event.getItem());
+					writer.flush();
+					if (logSize > Math.max(maxLogSize, 2 * snapshotSize)) {
+						LOGGER.log(Level.FINE, "Compacting change log of logSize={0}", logSize);
+						startSession();
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Can not write event={0} to the change log, stopping", event);
+				e.printStackTrace();
+				subscription.cancel();
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (closed || !(throwable instanceof ItemEventPublisher.EventsLostException)) {
+				LOGGER.log(Level.WARNING, "Change log subscription failed", throwable);
+				return;
+			}
+			LOGGER.log(Level.INFO, "Change log writer fell behind, starting a new session");
+			try {
+				startSessionAndSubscribe();
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Can not write snapshot to the change log, stopping");
+				e.printStackTrace();
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			LOGGER.log(Level.FINE, "Event publisher closed");
+		}
+
+	}
+
+}
@@ -0,0 +1,358 @@
+package voruti.priorit.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import voruti.priorit.CalendarQueue;
+import voruti.priorit.Item;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Read-only replica of a list, kept current by tailing the change log written
+ * by a {@link ChangeLogWriter} of the leading {@link PrioritManager}. Followers
+ * never parse the item files, so any number of reading processes can follow
+ * one list.
+ * <p>
+ * Changes become visible after the next {@link #poll()}; the lag can be
+ * observed with {@link #getLagBytes()} and {@link #getLagMillis()}.
+ *
+ * @author voruti
+ */
+public class PrioritFollower implements Closeable {
+
+	private static final String CLASS_NAME = PrioritFollower.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The maximum length of the header line.
+	 */
+	private static final int HEADER_SIZE = 256;
+
+	/**
+	 * How often a {@link #poll()} is repeated if the leader started a new
+	 * session while it was read.
+	 */
+	private static final int POLL_ATTEMPTS = 3;
+
+	private final File logFile;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The replicated {@link Item items} (private copies) in their order.
+	 */
+	private volatile CalendarQueue items = new CalendarQueue();
+
+	/**
+	 * The session of the writer the {@link #items} are from.
+	 */
+	private String session = null;
+
+	/**
+	 * Offset in {@link #logFile} of the next unread record.
+	 */
+	private volatile long position = 0;
+
+	private volatile long appliedSequence = 0;
+
+	/**
+	 * Time at which everything written to {@link #logFile} was applied at the
+	 * latest.
+	 */
+	private volatile long caughtUpAt = System.currentTimeMillis();
+
+	/**
+	 * Creates a follower that is only updated by calling {@link #poll()}.
+	 *
+	 * @param directory the item directory of the leader
+	 * @throws IOException if the change log can not be read
+	 */
+	public PrioritFollower(File directory) throws IOException {
+		this(directory, 0);
+	}
+
+	/**
+	 * @param directory          the item directory of the leader
+	 * @param pollIntervalMillis the interval to {@link #poll()} the change log in
+	 *                           the background; {@code 0} to only poll manually
+	 * @throws IOException if the change log can not be read
+	 */
+	public PrioritFollower(File directory, long pollIntervalMillis) throws IOException {
+		final String METHOD_NAME = "<init>";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, new Object[] { directory, pollIntervalMillis });
+
+		this.logFile = ChangeLog.getFile(directory);
+		poll();
+
+		if (pollIntervalMillis > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "priorit-follower");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(() -> {
+				try {
+					poll();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Polling change log={0} failed", logFile);
+					e.printStackTrace();
+				}
+			}, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+		} else {
+			scheduler = null;
+		}
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME);
+	}
+
+	/**
+	 * Applies all records appended to the change log since the last poll. If the
+	 * leader started a new session, the {@link Item items} are replaced by the
+	 * ones of the new session at once. Records of two sessions are never mixed:
+	 * if the session changes while the records are read, they are discarded and
+	 * the new session is read.
+	 *
+	 * @return the number of applied records
+	 * @throws IOException if the change log can not be read
+	 */
+	public synchronized int poll() throws IOException {
+		final String METHOD_NAME = "poll";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME);
+
+		for (int attempt = 1; attempt <= POLL_ATTEMPTS; attempt++) {
+			int applied = pollSession();
+			if (applied >= 0) {
+				LOGGER.exiting(CLASS_NAME, METHOD_NAME, applied);
+				return applied;
+			}
+			LOGGER.log(Level.FINE, "Session of change log={0} changed while polling", logFile);
+		}
+		LOGGER.log(Level.WARNING, "Session of change log={0} changed on every of attempts={1}, skipping poll",
+				new Object[] { logFile, POLL_ATTEMPTS });
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, 0);
+		return 0;
+	}
+
+	/**
+	 * Reads the records appended to the change log since the last poll and
+	 * applies them, if the session of the change log did not change meanwhile.
+	 *
+	 * @return the number of applied records; {@code -1} if the session changed
+	 *         while reading
+	 */
+	private int pollSession() throws IOException {
+		long pollStart = System.currentTimeMillis();
+		if (!logFile.exists()) {
+			caughtUpAt = pollStart;
+			return 0;
+		}
+
+		int applied = 0;
+		try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+			// header:
+			channel.read(buffer, 0);
+			int headerEnd = indexOf(buffer.array(), Math.min(buffer.position(), HEADER_SIZE), (byte) '\n');
+			if (headerEnd < 0) // not completely written yet
+				return 0;
+			String currentSession = parseSession(new String(buffer.array(), 0, headerEnd, StandardCharsets.UTF_8));
+
+			CalendarQueue target = items;
+			long readFrom = position;
+			long sequence = appliedSequence;
+			boolean newSession = !currentSession.equals(session) || size < position;
+			if (newSession) {
+				LOGGER.log(Level.INFO, "Following new session={0} of change log={1}",
+						new Object[] { currentSession, logFile });
+				target = new CalendarQueue();
+				readFrom = headerEnd + 1;
+				sequence = 0;
+			}
+
+			// records; only complete lines are applied:
+			ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			long readPosition = readFrom;
+			while (readPosition < size) {
+				// (cast, so that a build on JDK 9+ still runs on Java 8, which has no
+				// ByteBuffer.clear())
+				((Buffer) buffer).clear();
+				int read = channel.read(buffer, readPosition);
+				if (read < 0)
+					break;
+				readPosition += read;
+				byte[] bytes = buffer.array();
+				for (int i = 0; i < read; i++) {
+					if (bytes[i] != '\n') {
+						line.write(bytes[i]);
+						continue;
+					}
+					String record = new String(line.toByteArray(), StandardCharsets.UTF_8);
+					readFrom += line.size() + 1;
+					line.reset();
+					try {
+						ChangeLog.Record parsed = ChangeLog.Record.parse(record);
+						target.put(parsed.item);
+						sequence = parsed.sequence;
+						applied++;
+					} catch (IllegalArgumentException e) {
+						LOGGER.log(Level.WARNING, "Skipping invalid record in change log={0}", logFile);
+						e.printStackTrace();
+					}
+				}
+			}
+
+			// a new session replaces the change log:
+			if (!currentSession.equals(readSession()))
+				return -1;
+
+			session = currentSession;
+			items = target;
+			position = readFrom;
+			appliedSequence = sequence;
+			if (readFrom >= size)
+				caughtUpAt = pollStart;
+		}
+
+		return applied;
+	}
+
+	/**
+	 * @return the session of the current change log; {@code null} if it has none
+	 *         (yet)
+	 */
+	private String readSession() throws IOException {
+		if (!logFile.exists())
+			return null;
+		try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(buffer, 0);
+			int headerEnd = indexOf(buffer.array(), buffer.position(), (byte) '\n');
+			if (headerEnd < 0)
+				return null;
+			return parseSession(new String(buffer.array(), 0, headerEnd, StandardCharsets.UTF_8));
+		}
+	}
+
+	private String parseSession(String header) throws IOException {
+		if (!header.startsWith(ChangeLog.HEADER_PREFIX))
+			throw new IOException(String.format("File=%s is no change log", logFile));
+		return header.substring(ChangeLog.HEADER_PREFIX.length());
+	}
+
+	/**
+	 * @return the sequence number of the last applied record of the current
+	 *         session
+	 */
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * @return the number of bytes written to the change log but not applied yet
+	 */
+	public long getLagBytes() {
+		long length = logFile.length();
+		long current = position;
+		return length >= current ? length - current : length;
+	}
+
+	/**
+	 * @return the time in milliseconds since this follower last had all changes
+	 *         written to the change log; {@code 0} if it is up to date
+	 */
+	public long getLagMillis() {
+		if (getLagBytes() == 0)
+			return 0;
+		return System.currentTimeMillis() - caughtUpAt;
+	}
+
+	/**
+	 * @return copies of all replicated {@link Item items}; sorted by priority
+	 *         (most important {@link Item} first)
+	 *
+	 * @see PrioritManager#getAllItems()
+	 */
+	public List<Item> getAllItems() {
+		List<Item> list = getItems().toList();
+		list.replaceAll(Item::copy);
+		return list;
+	}
+
+	/**
+	 * @return the next/most important {@link Item}; {@code null} if the list is
+	 *         empty
+	 *
+	 * @see PrioritManager#getNextItem()
+	 */
+	public Item getNextItem() {
+		Item item = getItems().peek();
+		return item == null ? null : item.copy();
+	}
+
+	/**
+	 * @param text the regEx to search for
+	 * @return all replicated {@link Item items} matching {@code text}
+	 *
+	 * @see PrioritManager#searchItem(String)
+	 */
+	public List<Item> searchItem(String text) {
+		return getAllItems().stream()
+				.filter(item -> item.getTitle()
+						.matches(text)
+						|| item.getText()
+								.matches(text)
+						|| item.getuName()
+								.matches(text)
+						|| item.getCategories()
+								.stream()
+								.anyMatch(c -> c.matches(text)))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Stops polling in the background.
+	 */
+	@Override
+	public void close() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+
+	/**
+	 * @return {@link #items}, moved to the current day
+	 */
+	private CalendarQueue getItems() {
+		CalendarQueue current = items;
+		current.advanceTo((int) LocalDate.now()
+				.toEpochDay());
+		return current;
+	}
+
+	private static int indexOf(byte[] bytes, int length, byte b) {
+		for (int i = 0; i < length; i++)
+			if (bytes[i] == b)
+				return i;
+		return -1;
+	}
+
+}
@@ -0,0 +1,64 @@
+package voruti.priorit.score;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Subtracts a weight per category from the score of another
+ * {@link ScoringFunction}, so items of boosted categories become more urgent.
+ * 
+ * @author voruti
+ */
+public class CategoryBoostScoring implements ScoringFunction {
+
+	private final ScoringFunction delegate;
+
+	private final Map<String, Double> boosts;
+
+	/**
+	 * @param delegate the {@link ScoringFunction} calculating the base score
+	 * @param boosts   the weight per category name (positive makes more urgent)
+	 */
+	public CategoryBoostScoring(ScoringFunction delegate, Map<String, Double> boosts) {
+		this.delegate = delegate;
+		this.boosts = new LinkedHashMap<>(boosts);
+	}
+
+	@Override
+	public double score(ItemFeatures features, int index, int today) {
+		double score = delegate.score(features, index, today);
+		long mask = features.getCategoryMask(index);
+		for (Map.Entry<String, Double> boost : boosts.entrySet())
+			if ((mask & features.getCategoryBit(boost.getKey())) != 0)
+				score -= boost.getValue();
+		return score;
+	}
+
+	@Override
+	public void scoreRange(ItemFeatures features, int today, int from, int to, double[] scores) {
+		delegate.scoreRange(features, today, from, to, scores);
+
+		// resolve the boosts to bits once:
+		long[] bits = new long[boosts.size()];
+		double[] weights = new double[boosts.size()];
+		int count = 0;
+		for (Map.Entry<String, Double> boost : boosts.entrySet()) {
+			long bit = features.getCategoryBit(boost.getKey());
+			if (bit != 0) {
+				bits[count] = bit;
+				weights[count++] = boost.getValue();
+			}
+		}
+
+		for (int b = 0; b < count; b++)
+			for (int i = from; i < to; i++)
+				if ((features.getCategoryMask(i) & bits[b]) != 0)
+					scores[i] -= weights[b];
+	}
+
+	@Override
+	public boolean isDayDependent() {
+		return delegate.isDayDependent();
+	}
+
+}
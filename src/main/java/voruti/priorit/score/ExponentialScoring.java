@@ -0,0 +1,61 @@
+package voruti.priorit.score;
+
+import voruti.priorit.Priority;
+
+/**
+ * Urgency that doubles every {@link #halfLifeDays} the ETA comes closer
+ * (and keeps growing when overdue), weighted by the priority. The score is the
+ * negated urgency.
+ * 
+ * @author voruti
+ */
+public class ExponentialScoring implements ScoringFunction {
+
+	private static final int PRIORITY_INVERSION = Priority.VERY_LOW.getValue() + Priority.VERY_HIGH.getValue();
+
+	/**
+	 * Maximum magnitude of the exponent; avoids infinite scores for far away or
+	 * long overdue ETAs.
+	 */
+	private static final double MAX_EXPONENT = 512;
+
+	private final double decay;
+
+	private final double halfLifeDays;
+
+	/**
+	 * @param halfLifeDays the number of days after which the urgency halves
+	 */
+	public ExponentialScoring(double halfLifeDays) {
+		if (!(halfLifeDays > 0))
+			throw new IllegalArgumentException("halfLifeDays has to be positive");
+		this.halfLifeDays = halfLifeDays;
+		this.decay = Math.log(2) / halfLifeDays;
+	}
+
+	/**
+	 * @return the halfLifeDays
+	 */
+	public double getHalfLifeDays() {
+		return halfLifeDays;
+	}
+
+	@Override
+	public double score(ItemFeatures features, int index, int today) {
+		return score(features.getEtaDay(index) - today, features.getPriority(index));
+	}
+
+	@Override
+	public void scoreRange(ItemFeatures features, int today, int from, int to, double[] scores) {
+		int[] etaDays = features.etaDays();
+		int[] priorities = features.priorities();
+		for (int i = from; i < to; i++)
+			scores[i] = score(etaDays[i] - today, priorities[i]);
+	}
+
+	private double score(int daysLeft, int priority) {
+		double exponent = Math.max(-MAX_EXPONENT, Math.min(MAX_EXPONENT, -decay * daysLeft));
+		return -(PRIORITY_INVERSION - priority) * Math.exp(exponent);
+	}
+
+}
@@ -0,0 +1,211 @@
+package voruti.priorit.score;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import voruti.priorit.Item;
+
+/**
+ * Precomputed scoring inputs of many {@link Item items}, stored column-wise
+ * (one primitive array per feature) so that {@link ScoringFunction scoring
+ * functions} can process them in tight loops.
+ * 
+ * @author voruti
+ */
+public class ItemFeatures {
+
+	/**
+	 * Maximum number of distinct categories that get an own bit in
+	 * {@link #categoryMasks}; further categories are ignored for scoring.
+	 */
+	public static final int MAX_CATEGORIES = Long.SIZE;
+
+	private int size = 0;
+
+	/**
+	 * ETA of each item as epoch day (days since 1970-01-01, system time zone).
+	 */
+	private int[] etaDays;
+	/**
+	 * {@link voruti.priorit.Priority#getValue() Priority value} of each item.
+	 */
+	private int[] priorities;
+	private boolean[] done;
+	/**
+	 * One bit per category (see {@link #categoryBits}) of each item.
+	 */
+	private long[] categoryMasks;
+
+	private final Map<String, Integer> categoryBits = new HashMap<>();
+
+	/**
+	 * Creates empty features.
+	 * 
+	 * @param initialCapacity the number of items to reserve space for
+	 */
+	public ItemFeatures(int initialCapacity) {
+		int capacity = Math.max(16, initialCapacity);
+		etaDays = new int[capacity];
+		priorities = new int[capacity];
+		done = new boolean[capacity];
+		categoryMasks = new long[capacity];
+	}
+
+	/**
+	 * @return the number of items
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index the index of the item
+	 * @return the ETA of the item as epoch day
+	 */
+	public int getEtaDay(int index) {
+		return etaDays[index];
+	}
+
+	/**
+	 * @param index the index of the item
+	 * @return the priority value of the item
+	 */
+	public int getPriority(int index) {
+		return priorities[index];
+	}
+
+	/**
+	 * @param index the index of the item
+	 * @return the done flag of the item
+	 */
+	public boolean isDone(int index) {
+		return done[index];
+	}
+
+	/**
+	 * @param index the index of the item
+	 * @return the category bit mask of the item
+	 * 
+	 * @see #getCategoryBit(String)
+	 */
+	public long getCategoryMask(int index) {
+		return categoryMasks[index];
+	}
+
+	/**
+	 * @param category the name of the category
+	 * @return the bit of {@code category} in the category masks; {@code 0} if the
+	 *         category is unknown
+	 */
+	public long getCategoryBit(String category) {
+		Integer bit = categoryBits.get(category);
+		return bit == null ? 0 : 1L << bit;
+	}
+
+	/**
+	 * Direct access to the ETA column for bulk loops; only the first
+	 * {@link #size()} entries are valid.
+	 * 
+	 * @return the ETA epoch days
+	 */
+	int[] etaDays() {
+		return etaDays;
+	}
+
+	/**
+	 * Direct access to the priority column for bulk loops; only the first
+	 * {@link #size()} entries are valid.
+	 * 
+	 * @return the priority values
+	 */
+	int[] priorities() {
+		return priorities;
+	}
+
+	/**
+	 * Appends the features of {@link Item item}.
+	 * 
+	 * @param item the {@link Item} to extract the features from
+	 * @return the index of the new entry
+	 */
+	int add(Item item) {
+		if (size == etaDays.length) {
+			int capacity = size * 2;
+			etaDays = Arrays.copyOf(etaDays, capacity);
+			priorities = Arrays.copyOf(priorities, capacity);
+			done = Arrays.copyOf(done, capacity);
+			categoryMasks = Arrays.copyOf(categoryMasks, capacity);
+		}
+		set(size, item);
+		return size++;
+	}
+
+	/**
+	 * Overwrites the features at {@code index}.
+	 * 
+	 * @param index the index of the entry
+	 * @param item  the {@link Item} to extract the features from
+	 * @return {@code true}, if any feature changed
+	 */
+	boolean set(int index, Item item) {
+		int etaDay = toEpochDay(item);
+		int priority = item.getPriority()
+				.getValue();
+		long categoryMask = toCategoryMask(item.getCategories());
+
+		boolean changed = index >= size || etaDays[index] != etaDay || priorities[index] != priority
+				|| done[index] != item.isDone() || categoryMasks[index] != categoryMask;
+
+		etaDays[index] = etaDay;
+		priorities[index] = priority;
+		done[index] = item.isDone();
+		categoryMasks[index] = categoryMask;
+		return changed;
+	}
+
+	/**
+	 * Moves the last entry to {@code index} (swap-remove).
+	 * 
+	 * @param index the index of the entry to remove
+	 * @return the former index of the moved entry
+	 */
+	int remove(int index) {
+		int last = --size;
+		etaDays[index] = etaDays[last];
+		priorities[index] = priorities[last];
+		done[index] = done[last];
+		categoryMasks[index] = categoryMasks[last];
+		return last;
+	}
+
+	private long toCategoryMask(List<String> categories) {
+		long mask = 0;
+		for (String category : categories) {
+			Integer bit = categoryBits.get(category);
+			if (bit == null && categoryBits.size() < MAX_CATEGORIES) {
+				bit = categoryBits.size();
+				categoryBits.put(category, bit);
+			}
+			if (bit != null)
+				mask |= 1L << bit;
+		}
+		return mask;
+	}
+
+	/**
+	 * @param item the {@link Item}
+	 * @return the ETA of {@link Item item} as epoch day; in the same time zone
+	 *         as {@link Item#daysLeft(java.util.Date)}
+	 */
+	static int toEpochDay(Item item) {
+		return (int) item.getEtaDate()
+				.toInstant()
+				.atZone(ZoneId.systemDefault())
+				.toLocalDate()
+				.toEpochDay();
+	}
+
+}
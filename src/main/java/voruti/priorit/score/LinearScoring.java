@@ -0,0 +1,37 @@
+package voruti.priorit.score;
+
+import voruti.priorit.Priority;
+
+/**
+ * Days left multiplied with the priority, like
+ * {@link voruti.priorit.Item#calculateValue(voruti.priorit.Item)}. For overdue
+ * items the days are multiplied with the inverted priority instead, so that
+ * more important overdue items get the more negative (more urgent) score.
+ * 
+ * @author voruti
+ */
+public class LinearScoring implements ScoringFunction {
+
+	/**
+	 * {@link Priority#VERY_LOW} value + 1; used to invert the priority values.
+	 */
+	private static final int PRIORITY_INVERSION = Priority.VERY_LOW.getValue() + Priority.VERY_HIGH.getValue();
+
+	@Override
+	public double score(ItemFeatures features, int index, int today) {
+		return score(features.getEtaDay(index) - today, features.getPriority(index));
+	}
+
+	@Override
+	public void scoreRange(ItemFeatures features, int today, int from, int to, double[] scores) {
+		int[] etaDays = features.etaDays();
+		int[] priorities = features.priorities();
+		for (int i = from; i < to; i++)
+			scores[i] = score(etaDays[i] - today, priorities[i]);
+	}
+
+	private static double score(int daysLeft, int priority) {
+		return daysLeft >= 0 ? (double) daysLeft * priority : (double) daysLeft * (PRIORITY_INVERSION - priority);
+	}
+
+}
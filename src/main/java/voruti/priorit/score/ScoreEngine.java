@@ -0,0 +1,311 @@
+package voruti.priorit.score;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import voruti.priorit.Item;
+import voruti.priorit.ItemEvent;
+import voruti.priorit.ItemEventPublisher;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Keeps the scores of many {@link Item items} up to date. Scores are only
+ * recalculated for items whose features changed, or for all items in one bulk
+ * pass when the day rolls over (if the {@link ScoringFunction} depends on the
+ * day).
+ * <p>
+ * With {@link #follow(PrioritManager)} the engine mirrors the {@link Item
+ * items} of a {@link PrioritManager} and is kept current by its
+ * {@link PrioritManager#getEventPublisher() events}, so {@link #rank()}
+ * reflects every change without reading the items again.
+ *
+ * @author voruti
+ */
+public class ScoreEngine implements Closeable {
+
+	private static final String CLASS_NAME = ScoreEngine.class.getName();
+	private static final Logger LOGGER = Logger.getLogger(CLASS_NAME);
+
+	/**
+	 * Number of items per chunk of a parallel bulk pass.
+	 */
+	private static final int CHUNK_SIZE = 1 << 14;
+
+	private ScoringFunction scoringFunction;
+
+	private final ItemFeatures features = new ItemFeatures(16);
+
+	private final Map<String, Integer> indices = new HashMap<>();
+
+	private String[] uNames = new String[16];
+
+	private double[] scores = new double[16];
+
+	/**
+	 * Items whose score has to be recalculated.
+	 */
+	private final BitSet dirty = new BitSet();
+
+	/**
+	 * The epoch day of the last {@link #refresh(int)}.
+	 */
+	private int scoredDay = Integer.MIN_VALUE;
+
+	private volatile ItemEventPublisher.Subscription subscription;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * @param scoringFunction the {@link ScoringFunction} to calculate the scores
+	 *                        with
+	 */
+	public ScoreEngine(ScoringFunction scoringFunction) {
+		this.scoringFunction = scoringFunction;
+	}
+
+	/**
+	 * @return the scoringFunction
+	 */
+	public synchronized ScoringFunction getScoringFunction() {
+		return scoringFunction;
+	}
+
+	/**
+	 * Replaces the {@link ScoringFunction}; all scores are recalculated on the
+	 * next {@link #refresh()}.
+	 *
+	 * @param scoringFunction the scoringFunction to set
+	 */
+	public synchronized void setScoringFunction(ScoringFunction scoringFunction) {
+		this.scoringFunction = scoringFunction;
+		dirty.set(0, features.size());
+	}
+
+	/**
+	 * @return the number of items
+	 */
+	public synchronized int size() {
+		return features.size();
+	}
+
+	/**
+	 * Adds or updates {@link Item item}. Its score is recalculated on the next
+	 * {@link #refresh()} if any scoring input changed.
+	 *
+	 * @param item the {@link Item} to add or update
+	 */
+	public synchronized void put(Item item) {
+		Integer index = indices.get(item.getuName());
+		if (index == null) {
+			int newIndex = features.add(item);
+			if (newIndex >= uNames.length) {
+				uNames = Arrays.copyOf(uNames, uNames.length * 2);
+				scores = Arrays.copyOf(scores, scores.length * 2);
+			}
+			uNames[newIndex] = item.getuName();
+			indices.put(item.getuName(), newIndex);
+			dirty.set(newIndex);
+		} else if (features.set(index, item)) {
+			dirty.set(index);
+		}
+	}
+
+	/**
+	 * Adds or updates all {@link Item items}.
+	 *
+	 * @param items the {@link Item items} to add or update
+	 */
+	public synchronized void putAll(Collection<Item> items) {
+		for (Item item : items)
+			put(item);
+	}
+
+	/**
+	 * Adds all {@link Item items} of {@code prioritManager} and keeps them
+	 * current with its {@link PrioritManager#getEventPublisher() events} until
+	 * {@link #close()}.
+	 *
+	 * @param prioritManager the {@link PrioritManager} to follow
+	 */
+	public void follow(PrioritManager prioritManager) {
+		ItemEventPublisher.Subscription previous = subscription;
+		if (previous != null)
+			previous.cancel();
+
+		ItemEventPublisher publisher = prioritManager.getEventPublisher();
+		long fromSequence = publisher.getLastSequence() + 1;
+		putAll(prioritManager.getAllItems());
+		publisher.subscribe(new ScoreSubscriber(prioritManager), fromSequence);
+	}
+
+	/**
+	 * Stops following the {@link PrioritManager}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ItemEventPublisher.Subscription current = subscription;
+		if (current != null)
+			current.cancel();
+	}
+
+	/**
+	 * Removes the item with {@code uName}.
+	 *
+	 * @param uName the uName of the item
+	 * @return {@code true}, if the item was present
+	 */
+	public synchronized boolean remove(String uName) {
+		Integer index = indices.remove(uName);
+		if (index == null)
+			return false;
+
+		int moved = features.remove(index);
+		if (moved != index) {
+			uNames[index] = uNames[moved];
+			scores[index] = scores[moved];
+			dirty.set(index, dirty.get(moved));
+			indices.put(uNames[index], index);
+		}
+		uNames[moved] = null;
+		dirty.clear(moved);
+		return true;
+	}
+
+	/**
+	 * Recalculates outdated scores for the current day.
+	 *
+	 * @return the number of recalculated scores
+	 *
+	 * @see #refresh(int)
+	 */
+	public int refresh() {
+		return refresh((int) LocalDate.now()
+				.toEpochDay());
+	}
+
+	/**
+	 * Recalculates outdated scores: all scores in one bulk pass if the day
+	 * changed (and the {@link ScoringFunction} depends on it), otherwise only the
+	 * ones of changed items.
+	 *
+	 * @param today the current day as epoch day
+	 * @return the number of recalculated scores
+	 */
+	public synchronized int refresh(int today) {
+		final String METHOD_NAME = "refresh";
+		LOGGER.entering(CLASS_NAME, METHOD_NAME, today);
+
+		int size = features.size();
+		int recalculated;
+		if (today != scoredDay && scoringFunction.isDayDependent()) {
+			// bulk pass over all items:
+			int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			IntStream chunkStream = IntStream.range(0, chunks);
+			if (chunks > 1)
+				chunkStream = chunkStream.parallel();
+			chunkStream.forEach(c -> scoringFunction.scoreRange(features, today, c * CHUNK_SIZE,
+					Math.min(size, (c + 1) * CHUNK_SIZE), scores));
+			recalculated = size;
+			LOGGER.log(Level.FINE, "Day changed to today={0}, recalculated all scores", today);
+		} else {
+			recalculated = 0;
+			for (int i = dirty.nextSetBit(0); i >= 0 && i < size; i = dirty.nextSetBit(i + 1)) {
+				scores[i] = scoringFunction.score(features, i, today);
+				recalculated++;
+			}
+		}
+		dirty.clear();
+		scoredDay = today;
+
+		LOGGER.exiting(CLASS_NAME, METHOD_NAME, recalculated);
+		return recalculated;
+	}
+
+	/**
+	 * @param uName the uName of the item
+	 * @return the score of the last {@link #refresh()}; {@code NaN} if the item is
+	 *         unknown or was not scored yet
+	 */
+	public synchronized double getScore(String uName) {
+		Integer index = indices.get(uName);
+		if (index == null || dirty.get(index) || scoredDay == Integer.MIN_VALUE)
+			return Double.NaN;
+		return scores[index];
+	}
+
+	/**
+	 * Refreshes the scores and returns the uNames ordered like
+	 * {@link Item#compareTo(Item)}: open items first, then by score, priority and
+	 * uName.
+	 *
+	 * @return the ranked uNames (most urgent first)
+	 */
+	public synchronized List<String> rank() {
+		refresh();
+
+		Integer[] order = new Integer[features.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.<Integer>comparingInt(i -> features.isDone(i) ? 1 : 0)
+				.thenComparingDouble(i -> scores[i])
+				.thenComparingInt(features::getPriority)
+				.thenComparing(i -> uNames[i]));
+
+		List<String> ranked = new ArrayList<>(order.length);
+		for (Integer i : order)
+			ranked.add(uNames[i]);
+		return ranked;
+	}
+
+	private final class ScoreSubscriber implements ItemEventPublisher.Subscriber {
+
+		private final PrioritManager prioritManager;
+
+		private ScoreSubscriber(PrioritManager prioritManager) {
+			this.prioritManager = prioritManager;
+		}
+
+		@Override
+		public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+			ScoreEngine.this.subscription = subscription;
+			if (closed)
+				subscription.cancel();
+			else
+				subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(ItemEvent event) {
+			put(event.getItem());
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (!closed && throwable instanceof ItemEventPublisher.EventsLostException) {
+				LOGGER.log(Level.INFO, "Score engine fell behind, reading all items again");
+				follow(prioritManager);
+			} else {
+				LOGGER.log(Level.WARNING, "Score engine subscription failed", throwable);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			LOGGER.log(Level.FINE, "Event publisher closed");
+		}
+
+	}
+
+}
@@ -0,0 +1,48 @@
+package voruti.priorit.score;
+
+/**
+ * Calculates the score of items from their precomputed {@link ItemFeatures}.
+ * A smaller score means a more urgent item (like
+ * {@link voruti.priorit.Item#calculateValue(voruti.priorit.Item)}).
+ * 
+ * @author voruti
+ */
+@FunctionalInterface
+public interface ScoringFunction {
+
+	/**
+	 * Calculates the score of one item.
+	 * 
+	 * @param features the features of all items
+	 * @param index    the index of the item to score
+	 * @param today    the current day as epoch day
+	 * @return the score
+	 */
+	double score(ItemFeatures features, int index, int today);
+
+	/**
+	 * Calculates the scores of the items {@code from} (inclusive) to {@code to}
+	 * (exclusive). Implementations should override this with a loop over the
+	 * feature columns.
+	 * 
+	 * @param features the features of all items
+	 * @param today    the current day as epoch day
+	 * @param from     the first index
+	 * @param to       the index after the last one
+	 * @param scores   the array to write the scores to (same indices as
+	 *                 {@code features})
+	 */
+	default void scoreRange(ItemFeatures features, int today, int from, int to, double[] scores) {
+		for (int i = from; i < to; i++)
+			scores[i] = score(features, i, today);
+	}
+
+	/**
+	 * @return {@code true}, if the score changes with the current day (then all
+	 *         scores are recalculated on a day rollover)
+	 */
+	default boolean isDayDependent() {
+		return true;
+	}
+
+}
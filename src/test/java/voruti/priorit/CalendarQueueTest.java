@@ -0,0 +1,150 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static voruti.priorit.TestItems.TODAY;
+import static voruti.priorit.TestItems.createItem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class CalendarQueueTest {
+
+	/**
+	 * Test method for {@link voruti.priorit.CalendarQueue#toList()} and
+	 * {@link voruti.priorit.CalendarQueue#toList(int)}; compares to
+	 * {@link voruti.priorit.Item#compareTo(voruti.priorit.Item)}.
+	 */
+	@Test
+	void testToList() {
+		CalendarQueue queue = new CalendarQueue(TODAY);
+		List<Item> items = new ArrayList<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			// includes overdue items and items far outside of the window:
+			int days = random.nextInt(10) == 0 ? random.nextInt(5000) - 2500 : random.nextInt(60) - 20;
+			Item item = createItem("item" + i, Priority.values()[random.nextInt(5)], days);
+			item.setDone(random.nextInt(4) == 0);
+			items.add(item);
+			queue.put(item);
+		}
+		items.sort(null);
+
+		assertEquals(500, queue.size());
+		assertEquals(items, queue.toList());
+		assertSame(items.get(0), queue.peek());
+		for (int limit : new int[] { 0, 1, 17, 400, 500, 600 })
+			assertEquals(items.subList(0, Math.min(limit, items.size())), queue.toList(limit));
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.CalendarQueue#toSnapshotList()} and
+	 * {@link voruti.priorit.CalendarQueue#peekSnapshot()} with a partially loaded
+	 * {@link Item} whose fields can not be loaded at first: no empty snapshot is
+	 * returned or cached.
+	 */
+	@Test
+	void testSnapshotOfFailedLoad() {
+		CalendarQueue queue = new CalendarQueue(TODAY);
+		Item complete = createItem("a", Priority.MED, 2);
+		complete.setTitle("Title");
+		Item item = new Item("a", null, null, null, complete.getEtaDate(), Priority.MED, false);
+		AtomicInteger loads = new AtomicInteger();
+		item.setHydrator(() -> {
+			if (loads.incrementAndGet() == 1)
+				throw new IOException("Not readable yet");
+			return complete;
+		});
+		queue.put(item);
+
+		assertThrows(UncheckedIOException.class, queue::toSnapshotList);
+		assertEquals("Title", queue.peekSnapshot()
+				.getTitle());
+		assertSame(queue.peekSnapshot(), queue.toSnapshotList()
+				.get(0));
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.CalendarQueue#poll()}.
+	 */
+	@Test
+	void testPoll() {
+		CalendarQueue queue = new CalendarQueue(TODAY);
+		Item done = createItem("done", Priority.VERY_HIGH, -5);
+		done.setDone(true);
+		Item a = createItem("a", Priority.MED, 2);
+		Item b = createItem("b", Priority.MED, 2);
+		Item c = createItem("c", Priority.HIGH, 3);
+		queue.put(done);
+		queue.put(b);
+		queue.put(c);
+		queue.put(a);
+
+		// equal value 6: the higher priority comes first, then by uName:
+		assertSame(c, queue.poll());
+		assertSame(a, queue.poll());
+		assertSame(b, queue.poll());
+		assertSame(done, queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.size());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.CalendarQueue#put(Item)} as update
+	 * and {@link voruti.priorit.CalendarQueue#remove(String)}.
+	 */
+	@Test
+	void testUpdate() {
+		CalendarQueue queue = new CalendarQueue(TODAY);
+		Item a = createItem("a", Priority.LOW, 5);
+		Item b = createItem("b", Priority.LOW, 6);
+		queue.put(a);
+		queue.put(b);
+
+		Item updated = createItem("b", Priority.VERY_HIGH, 6);
+		queue.put(updated);
+
+		assertEquals(2, queue.size());
+		assertSame(updated, queue.peek());
+		assertSame(updated, queue.remove("b"));
+		assertNull(queue.remove("b"));
+		assertFalse(queue.contains("b"));
+		assertTrue(queue.contains("a"));
+		assertSame(a, queue.peek());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.CalendarQueue#advanceTo(int)}.
+	 */
+	@Test
+	void testAdvanceTo() {
+		CalendarQueue queue = new CalendarQueue(TODAY);
+		Item high = createItem("high", Priority.HIGH, 10); // value 20
+		Item low = createItem("low", Priority.VERY_LOW, 5); // value 25
+		queue.put(high);
+		queue.put(low);
+
+		assertSame(high, queue.peek());
+
+		queue.advanceTo(TODAY + 4); // values 12 and 5
+
+		assertEquals(TODAY + 4, queue.getToday());
+		assertSame(low, queue.peek());
+	}
+
+}
@@ -0,0 +1,192 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run {@link #main(String[])} to compare sequential and concurrent loads and
+ * imports on file systems (e.g. SSD and tmpfs):
+ * {@code IoExecutorTest <parentDirectory> <items> <ioConcurrency>}.
+ *
+ * @author voruti
+ */
+class IoExecutorTest {
+
+	private static List<Integer> range(int count) {
+		return IntStream.range(0, count)
+				.boxed()
+				.collect(Collectors.toList());
+	}
+
+	private static void testLimit(IoExecutor ioExecutor) throws IOException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+		ioExecutor.forEach(range(200), i -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+						.interrupt();
+			}
+			running.decrementAndGet();
+			done.add(i);
+		});
+
+		assertEquals(200, done.size());
+		assertTrue(maxRunning.get() <= ioExecutor.getLimit());
+		assertTrue(maxRunning.get() > 1);
+	}
+
+	/**
+	 * All elements are processed, never more than the limit at a time.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testLimit() throws IOException {
+		testLimit(new IoExecutor(4, false));
+		if (IoExecutor.isVirtualThreadsSupported())
+			testLimit(new IoExecutor(4, true));
+	}
+
+	/**
+	 * A limit of 1 runs on the calling thread.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testSequential() throws IOException {
+		Thread caller = Thread.currentThread();
+		List<Integer> order = new ArrayList<>();
+
+		new IoExecutor(1).forEach(range(10), i -> {
+			assertSame(caller, Thread.currentThread());
+			order.add(i);
+		});
+
+		assertEquals(range(10), order);
+		assertThrows(IllegalArgumentException.class, () -> new IoExecutor(0));
+	}
+
+	/**
+	 * The first {@link IOException} is thrown after all elements are processed.
+	 */
+	@Test
+	void testFailure() {
+		AtomicInteger processed = new AtomicInteger();
+
+		IOException e = assertThrows(IOException.class, () -> new IoExecutor(4).forEach(range(100), i -> {
+			processed.incrementAndGet();
+			if (i == 10)
+				throw new IOException("failed " + i);
+		}));
+
+		assertEquals("failed 10", e.getMessage());
+		assertEquals(100, processed.get());
+	}
+
+	/**
+	 * Imports {@code items} generated {@link Item items} into a new subdirectory
+	 * of {@code parent} and loads them, with an I/O concurrency of {@code 1} and
+	 * {@code ioConcurrency}. The subdirectory is deleted afterwards.
+	 *
+	 * @return the report
+	 */
+	private static String benchmark(File parent, int items, int ioConcurrency) throws IOException {
+		File directory = new File(parent, "priorit-io-benchmark");
+		deleteDirectory(directory);
+		long baseMillis = LocalDate.now()
+				.atStartOfDay(ZoneId.systemDefault())
+				.toInstant()
+				.toEpochMilli();
+		WorkloadGenerator generator = new WorkloadGenerator(5, "b", 20, 1.0, baseMillis);
+		PrioritManager source = new PrioritManager(new File(directory, "source"));
+		for (int i = 0; i < items; i++)
+			source.addItem(generator.nextItem());
+		ByteArrayOutputStream export = new ByteArrayOutputStream();
+		source.exportItems(export);
+
+		StringBuilder report = new StringBuilder(String.format("IoExecutor: %d items in %s (virtual threads=%s)",
+				items, directory, IoExecutor.isVirtualThreadsSupported()));
+		List<String> expected = null;
+		try {
+			for (int concurrency : new int[] { 1, ioConcurrency }) {
+				File target = new File(directory, "target" + concurrency);
+				deleteDirectory(target);
+				PrioritManager prioritManager = new PrioritManager(target);
+				prioritManager.setIoConcurrency(concurrency);
+
+				long start = System.nanoTime();
+				assertEquals(items, prioritManager.importItems(new ByteArrayInputStream(export.toByteArray()), false));
+				long importNanos = System.nanoTime() - start;
+				long loadNanos = Long.MAX_VALUE;
+				for (int run = 0; run < 3; run++) { // warm up
+					start = System.nanoTime();
+					prioritManager.reload();
+					loadNanos = Math.min(loadNanos, System.nanoTime() - start);
+				}
+
+				List<String> json = prioritManager.getAllItems()
+						.stream()
+						.map(ItemJson::toJson)
+						.collect(Collectors.toList());
+				if (expected == null)
+					expected = json;
+				assertEquals(expected, json);
+				report.append(String.format("%n  ioConcurrency=%-3d import=%.1fms load=%.1fms", concurrency,
+						importNanos / 1e6, loadNanos / 1e6));
+			}
+		} finally {
+			deleteDirectory(directory);
+		}
+		return report.toString();
+	}
+
+	private static void deleteDirectory(File dir) throws IOException {
+		if (dir.exists()) {
+			try (Stream<Path> paths = Files.walk(dir.toPath())) {
+				paths.sorted(Comparator.reverseOrder())
+						.map(Path::toFile)
+						.forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * @param args {@code <parentDirectory> <items> <ioConcurrency>}
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File(args.length > 0 ? args[0] : ".");
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int ioConcurrency = args.length > 2 ? Integer.parseInt(args[2]) : PrioritManager.DEFAULT_IO_CONCURRENCY;
+
+		System.out.println(benchmark(directory, items, ioConcurrency));
+	}
+
+}
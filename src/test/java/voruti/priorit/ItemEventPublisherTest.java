@@ -0,0 +1,133 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class ItemEventPublisherTest {
+
+	private ItemEventPublisher publisher;
+
+	/**
+	 * Collects everything it receives; requests {@link #initialRequest} events on
+	 * subscription.
+	 */
+	private static class CollectingSubscriber implements ItemEventPublisher.Subscriber {
+
+		private final long initialRequest;
+		private ItemEventPublisher.Subscription subscription;
+		private final List<Long> sequences = new ArrayList<>();
+		private Throwable error;
+		private boolean completed;
+
+		private CollectingSubscriber(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		@Override
+		public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(ItemEvent event) {
+			sequences.add(event.getSequence());
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		// deliver on the calling thread, to test deterministically:
+		publisher = new ItemEventPublisher(4, Runnable::run);
+	}
+
+	private void publish(int count) {
+		for (int i = 0; i < count; i++)
+			publisher.publish(ItemEvent.Type.ADDED, new Item(), null);
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ItemEventPublisher#subscribe(ItemEventPublisher.Subscriber)}
+	 * with backpressure.
+	 */
+	@Test
+	void testSubscribe() {
+		publish(1);
+		CollectingSubscriber subscriber = new CollectingSubscriber(2);
+		publisher.subscribe(subscriber);
+
+		publish(3);
+
+		assertEquals(4, publisher.getLastSequence());
+		assertEquals(2, subscriber.sequences.size());
+		assertEquals(Long.valueOf(2), subscriber.sequences.get(0));
+
+		subscriber.subscription.request(5);
+
+		assertEquals(3, subscriber.sequences.size());
+		assertEquals(Long.valueOf(4), subscriber.sequences.get(2));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ItemEventPublisher#subscribe(ItemEventPublisher.Subscriber, long)}.
+	 */
+	@Test
+	void testResume() {
+		publish(6);
+
+		CollectingSubscriber resumed = new CollectingSubscriber(Long.MAX_VALUE);
+		publisher.subscribe(resumed, 4);
+		CollectingSubscriber tooOld = new CollectingSubscriber(Long.MAX_VALUE);
+		publisher.subscribe(tooOld, 1);
+
+		assertEquals(3, resumed.sequences.size());
+		assertTrue(tooOld.sequences.isEmpty());
+		assertTrue(tooOld.error instanceof ItemEventPublisher.EventsLostException);
+		assertEquals(1, publisher.getSubscriberCount());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.ItemEventPublisher#close()}.
+	 */
+	@Test
+	void testClose() {
+		CollectingSubscriber subscriber = new CollectingSubscriber(1);
+		publisher.subscribe(subscriber);
+		publish(2);
+
+		publisher.close();
+
+		assertTrue(!subscriber.completed);
+		subscriber.subscription.request(1);
+		assertTrue(subscriber.completed);
+		assertEquals(2, subscriber.sequences.size());
+		assertEquals(0, publisher.getSubscriberCount());
+	}
+
+}
@@ -0,0 +1,72 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class ItemJsonTest {
+
+	/**
+	 * Test method for {@link voruti.priorit.ItemJson#toJson(voruti.priorit.Item)}
+	 * and {@link voruti.priorit.ItemJson#fromJson(java.lang.String)}.
+	 */
+	@Test
+	void testRoundTrip() {
+		Item item = new Item();
+		item.setTitle("Quote \" and \\ backslash");
+		item.setText("Line 1\nLine 2\t\u0001 ünïcödé");
+		item.setCategories(Arrays.asList("work", "home"));
+		item.setEtaDate(new Date(1234567890123L));
+		item.setPriority(Priority.HIGH);
+		item.setDone(true);
+
+		String json = ItemJson.toJson(item);
+		Item parsed = ItemJson.fromJson(json);
+
+		assertFalse(json.contains("\n"));
+		assertEquals(item.getuName(), parsed.getuName());
+		assertEquals(item.getTitle(), parsed.getTitle());
+		assertEquals(item.getText(), parsed.getText());
+		assertEquals(item.getCategories(), parsed.getCategories());
+		assertEquals(item.getEtaDate(), parsed.getEtaDate());
+		assertEquals(Priority.HIGH, parsed.getPriority());
+		assertTrue(parsed.isDone());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.ItemJson#fromJson(java.lang.String)}
+	 * with defaults and invalid input.
+	 */
+	@Test
+	void testFromJson() {
+		Item parsed = ItemJson.fromJson(" { \"uName\" : \"abc\", \"unknown\": [1, \"x\"], \"other\": 5 } ");
+
+		assertEquals("abc", parsed.getuName());
+		assertEquals("", parsed.getTitle());
+		assertEquals(Arrays.asList("none"), parsed.getCategories());
+		assertEquals(30, Item.daysLeft(parsed.getEtaDate()));
+
+		parsed = ItemJson.fromJson("{\"uName\":\"MiXed\",\"title\":null,\"text\":null}");
+		assertEquals("mixed", parsed.getuName());
+		assertEquals("", parsed.getTitle());
+		assertEquals("", parsed.getText());
+
+		assertThrows(IllegalArgumentException.class, () -> ItemJson.fromJson("{\"title\":\"no uName\"}"));
+		assertThrows(IllegalArgumentException.class, () -> ItemJson.fromJson("{\"uName\":\"a\""));
+		assertThrows(IllegalArgumentException.class, () -> ItemJson.fromJson("{\"uName\":\"a\",\"priority\":\"X\"}"));
+		for (String uName : new String[] { "", ".", "..", "../a", "a/b", "a\\\\b", "a\\u0000b" })
+			assertThrows(IllegalArgumentException.class, () -> ItemJson.fromJson("{\"uName\":\"" + uName + "\"}"),
+					uName);
+	}
+
+}
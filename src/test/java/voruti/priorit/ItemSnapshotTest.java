@@ -0,0 +1,132 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class ItemSnapshotTest {
+
+	/**
+	 * Test method for {@link voruti.priorit.ItemSnapshot#of(voruti.priorit.Item)}
+	 * and {@link voruti.priorit.ItemSnapshot#toItem()}.
+	 */
+	@Test
+	void testOf() {
+		Item item = new Item();
+		item.setTitle("Title");
+		item.setCategories(Arrays.asList("b", "a"));
+
+		ItemSnapshot snapshot = item.toSnapshot();
+		item.setTitle("Changed");
+		Item back = snapshot.toItem();
+
+		assertEquals("Title", snapshot.getTitle());
+		assertEquals(Arrays.asList("a", "b"), snapshot.getCategories());
+		assertEquals(item.getEtaDate(), snapshot.getEtaDate());
+		assertEquals(item, back);
+		assertEquals("Title", back.getTitle());
+		assertEquals(Arrays.asList("a", "b"), back.getCategories());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getCategories()
+				.add("c"));
+	}
+
+	/**
+	 * Test method for the {@code with*} methods of
+	 * {@link voruti.priorit.ItemSnapshot}.
+	 */
+	@Test
+	void testWith() {
+		ItemSnapshot s1 = new Item().toSnapshot();
+
+		ItemSnapshot s2 = s1.withPriority(Priority.HIGH)
+				.withDone(true);
+		ItemSnapshot s3 = s2.withCategory("work");
+		ItemSnapshot s4 = s3.withoutCategory("none");
+
+		assertSame(Priority.VERY_LOW, s1.getPriority());
+		assertSame(Priority.HIGH, s2.getPriority());
+		assertTrue(s2.isDone());
+		assertSame(s1.getCategories(), s2.getCategories());
+		assertEquals(Arrays.asList("none", "work"), s3.getCategories());
+		assertEquals(Arrays.asList("work"), s4.getCategories());
+		assertSame(s3, s3.withCategory("work"));
+		assertSame(s4, s4.withoutCategory("none"));
+		assertNotSame(new Item().toSnapshot(), s1);
+		assertSame(new Item().toSnapshot()
+				.getCategories(), s1.getCategories());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ItemSnapshot#compareTo(voruti.priorit.ItemSnapshot)}.
+	 */
+	@Test
+	void testCompareTo() {
+		Item i1 = new Item();
+		i1.setuName("i1");
+		Item i2 = new Item();
+		i2.setuName("i2");
+		i2.setDone(true);
+		Item i3 = new Item();
+		i3.setuName("i3");
+		i3.setPriority(Priority.HIGH);
+
+		for (Item a : Arrays.asList(i1, i2, i3))
+			for (Item b : Arrays.asList(i1, i2, i3))
+				assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(a.toSnapshot()
+						.compareTo(b.toSnapshot())));
+	}
+
+	/**
+	 * Reading a shared snapshot allocates less than the defensive
+	 * {@link voruti.priorit.Item#copy()} plus
+	 * {@link voruti.priorit.Item#getCategories()}.
+	 */
+	@Test
+	void testReadAllocation() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		long threadId = Thread.currentThread()
+				.getId();
+
+		Item item = new Item();
+		ItemSnapshot snapshot = item.toSnapshot();
+		int reads = 10000;
+		int sink = 0;
+
+		long before = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < reads; i++) {
+			List<String> categories = item.copy()
+					.getCategories();
+			sink += categories.size();
+		}
+		long copyBytes = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		before = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < reads; i++) {
+			List<String> categories = snapshot.getCategories();
+			sink += categories.size();
+		}
+		long snapshotBytes = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(2 * reads, sink);
+		assertTrue(snapshotBytes * 10 < copyBytes, () -> String.format(
+				"Allocated bytes per read: copy=%d, snapshot=%d", copyBytes / reads, snapshotBytes / reads));
+	}
+
+}
@@ -160,6 +160,23 @@ class ItemTest {
 		assertEquals(68, v4);
 	}
 
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.Item#estimateMemoryUsage(voruti.priorit.Item)}.
+	 */
+	@Test
+	void testEstimateMemoryUsage() {
+		Item i1 = new Item();
+		Item i2 = new Item();
+		i2.setText("A rather long text that takes some memory.");
+
+		long m1 = Item.estimateMemoryUsage(i1);
+		long m2 = Item.estimateMemoryUsage(i2);
+
+		assertTrue(m1 > 0);
+		assertTrue(m2 > m1);
+	}
+
 	/**
 	 * Test method for {@link voruti.priorit.Item#daysLeft(java.util.Date)}.
 	 */
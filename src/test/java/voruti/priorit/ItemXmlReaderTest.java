@@ -0,0 +1,239 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class ItemXmlReaderTest {
+
+	private static final String TEST_DIR = "testItemXmlReader";
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		deleteDirectory();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterEach
+	void tearDown() throws Exception {
+		deleteDirectory();
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			try (Stream<Path> paths = Files.walk(dir.toPath())) {
+				paths.sorted(Comparator.reverseOrder())
+						.map(Path::toFile)
+						.forEach(File::delete);
+			}
+		}
+	}
+
+	private static List<Item> createItems(int count) {
+		long baseMillis = LocalDate.now()
+				.atStartOfDay(ZoneId.systemDefault())
+				.toInstant()
+				.toEpochMilli();
+		WorkloadGenerator generator = new WorkloadGenerator(3, "x", 10, 1.0, baseMillis);
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			items.add(generator.nextItem());
+		return items;
+	}
+
+	/**
+	 * A loaded {@link PrioritManager} has the same order and (on access) the same
+	 * {@link Item items} as the saving one.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testLoadedItemsAreComplete() throws IOException {
+		PrioritManager prioritManager = new PrioritManager(new File(TEST_DIR));
+		for (Item item : createItems(200))
+			assertTrue(prioritManager.addItem(item));
+		List<Item> expected = prioritManager.getAllItems();
+
+		PrioritManager loaded = new PrioritManager(new File(TEST_DIR));
+		Item next = loaded.getNextItem();
+		assertTrue(next.toString()
+				.contains("partially loaded"));
+		// the categories are read with the ordering fields:
+		for (Item item : loaded.getAllItems()) {
+			assertEquals(expected.get(expected.indexOf(item))
+					.getCategories(), item.getCategories());
+			assertTrue(item.toString()
+					.contains("partially loaded"));
+		}
+		List<Item> actual = loaded.getAllItems();
+		assertEquals(expected, actual);
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(ItemJson.toJson(expected.get(i)), ItemJson.toJson(actual.get(i)));
+
+		// updating a partially loaded item keeps its other fields:
+		next = loaded.getNextItem();
+		next.setPriority(Priority.VERY_HIGH);
+		assertTrue(loaded.updateItem(next));
+		Item reloaded = new PrioritManager(new File(TEST_DIR)).searchItem(".*")
+				.stream()
+				.filter(next::equals)
+				.findFirst()
+				.get();
+		assertEquals(ItemJson.toJson(next), ItemJson.toJson(reloaded));
+		assertEquals(expected.get(0)
+				.getTitle(), reloaded.getTitle());
+	}
+
+	/**
+	 * Files with another field order (as saved by older versions) are read; the
+	 * other fields are loaded once for all copies.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testOldFieldOrder() throws IOException {
+		Path path = Paths.get(TEST_DIR, "a.xml");
+		Files.createDirectories(path.getParent());
+		Files.write(path, Arrays.asList("<item>", "  <uName>a</uName>", "  <title>Title</title>",
+				"  <text>Text</text>", "  <categories>", "    <string>none</string>", "  </categories>",
+				"  <etaDate>2026-11-18 08:06:30.804 UTC</etaDate>", "  <priority>HIGH</priority>",
+				"  <done>true</done>", "</item>"));
+		Item complete = new Item("a", "Title", "Text", null, null, null, true);
+		complete.setCategories(Arrays.asList("none"));
+		AtomicInteger loads = new AtomicInteger();
+
+		Item item = ItemXmlReader.readOrderingFields(path, () -> {
+			loads.incrementAndGet();
+			return complete;
+		});
+		Item copy = item.copy();
+
+		assertEquals("a", item.getuName());
+		assertEquals(1794989190804L, item.getEtaDate()
+				.getTime());
+		assertEquals(Priority.HIGH, item.getPriority());
+		assertTrue(item.isDone());
+		assertEquals(Arrays.asList("none"), item.getCategories());
+		assertEquals(0, loads.get());
+		assertEquals("Title", copy.getTitle());
+		assertEquals(1, loads.get());
+		assertEquals("Text", item.getText());
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * The other fields of a file changed since the ordering fields were read are
+	 * loaded from its current version (instead of being returned empty).
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testChangedFile() throws IOException {
+		Path path = Paths.get(TEST_DIR, "a.xml");
+		Files.createDirectories(path.getParent());
+		Files.write(path, Arrays.asList("<item>", "  <uName>a</uName>",
+				"  <etaDate>2026-11-18 08:06:30.804 UTC</etaDate>", "  <priority>HIGH</priority>",
+				"  <done>false</done>", "  <categories/>", "  <title>Old</title>", "</item>"));
+		AtomicInteger loads = new AtomicInteger();
+		Item item = ItemXmlReader.readOrderingFields(path, () -> {
+			loads.incrementAndGet();
+			return new Item("a", "New", "", new TreeSet<>(), null, null, false);
+		});
+
+		Files.write(path, Arrays.asList("<item>", "  <uName>a</uName>",
+				"  <etaDate>2026-11-18 08:06:30.804 UTC</etaDate>", "  <priority>LOW</priority>",
+				"  <done>false</done>", "  <categories/>", "  <title>New</title>", "</item>"));
+
+		assertEquals(new ArrayList<>(), item.getCategories());
+		assertEquals(0, loads.get());
+		assertEquals("New", item.getTitle());
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Files without the needed fields are rejected.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testInvalidFile() throws IOException {
+		Path path = Paths.get(TEST_DIR, "a.xml");
+		Files.createDirectories(path.getParent());
+		Files.write(path, Arrays.asList("<item>", "  <uName>a</uName>", "</item>"));
+
+		assertThrows(IOException.class, () -> ItemXmlReader.readOrderingFields(path, () -> null));
+		Files.write(path, Arrays.asList("<item>", "  <uName>a</uName>"));
+		assertThrows(IOException.class, () -> ItemXmlReader.readOrderingFields(path, () -> null));
+	}
+
+	/**
+	 * Reports reading the ordering fields vs. loading complete {@link Item items}
+	 * of a new list: {@code ItemXmlReaderTest [<items>]}.
+	 *
+	 * @param args {@code [<items>]}
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		File directory = Files.createTempDirectory("priorit-xml")
+				.toFile();
+		try {
+			PrioritManager prioritManager = new PrioritManager(directory);
+			for (Item item : createItems(count))
+				prioritManager.addItem(item);
+
+			long partialNanos = Long.MAX_VALUE;
+			long completeNanos = Long.MAX_VALUE;
+			for (int run = 0; run < 3; run++) { // warm up
+				long start = System.nanoTime();
+				prioritManager.reload();
+				List<Item> items = prioritManager.getAllItems();
+				partialNanos = Math.min(partialNanos, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				for (Item item : items)
+					item.hydrate();
+				completeNanos = Math.min(completeNanos, System.nanoTime() - start);
+			}
+
+			System.out.println(String.format("ItemXmlReader: load of %d items: ordering fields=%.1fms, rest=%.1fms",
+					count, partialNanos / 1e6, completeNanos / 1e6));
+		} finally {
+			try (Stream<Path> paths = Files.walk(directory.toPath())) {
+				paths.sorted(Comparator.reverseOrder())
+						.map(Path::toFile)
+						.forEach(File::delete);
+			}
+		}
+	}
+
+}
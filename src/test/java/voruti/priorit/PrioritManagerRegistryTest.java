@@ -0,0 +1,200 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class PrioritManagerRegistryTest {
+
+	private static final String TEST_DIR = "testRegistry";
+
+	private PrioritManagerRegistry registry;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterAll
+	static void tearDownAfterClass() throws Exception {
+		deleteDirectory();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		deleteDirectory();
+
+		registry = new PrioritManagerRegistry(new File(TEST_DIR), 2, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterEach
+	void tearDown() throws Exception {
+		registry.close();
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Path path = dir.toPath();
+			Files.walk(path)
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManagerRegistry#get(java.lang.String)}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testGet() throws IOException {
+		assertFalse(registry.isResident("a"));
+
+		PrioritManager a = registry.get("a");
+
+		assertTrue(registry.isResident("a"));
+		assertSame(a, registry.get("a"));
+		assertEquals(Arrays.asList("a"), registry.getListNames());
+		assertThrows(IOException.class, () -> registry.get("../escape"));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManagerRegistry#get(java.lang.String)} with
+	 * eviction.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testEviction() throws IOException {
+		registry.get("a")
+				.addItem(new Item());
+		PrioritManager b = registry.get("b");
+		registry.get("a");
+		registry.get("c");
+
+		assertTrue(registry.isResident("a"));
+		assertFalse(registry.isResident("b"));
+		// the evicted manager rejects changes, the reopened one has all data:
+		assertTrue(b.isClosed());
+		assertFalse(b.addItem(new Item()));
+		assertThrows(IOException.class, b::reload);
+		assertEquals(0, registry.get("b")
+				.getAllItems()
+				.size());
+		assertTrue(registry.evict("b"));
+		assertFalse(registry.evict("b"));
+		assertTrue(registry.isResident("c"));
+		assertEquals(Arrays.asList("a", "b", "c"), registry.getListNames());
+
+		// cold list is reopened with its data:
+		registry.get("b");
+		assertFalse(registry.isResident("a"));
+		assertEquals(1, registry.get("a")
+				.getAllItems()
+				.size());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManagerRegistry#getMemoryUsage(java.lang.String)}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testGetMemoryUsage() throws IOException {
+		PrioritManager a = registry.get("a");
+		assertEquals(0, registry.getMemoryUsage("a"));
+
+		a.addItem(new Item());
+		a.getAllItems();
+
+		assertTrue(registry.getMemoryUsage("a") > 0);
+		assertEquals(registry.getMemoryUsage("a"), registry.getTotalMemoryUsage());
+		assertEquals(0, registry.getMemoryUsage("notOpen"));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManagerRegistry#get(java.lang.String)} with
+	 * the memory limit exceeded by a change instead of an open.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testEvictionAfterChange() throws IOException, InterruptedException {
+		registry.close();
+		registry = new PrioritManagerRegistry(new File(TEST_DIR), 10, 1);
+
+		registry.get("a");
+		PrioritManager b = registry.get("b");
+		// empty lists need no memory:
+		assertTrue(registry.isResident("a"));
+
+		b.addItem(new Item());
+		for (int i = 0; i < 500 && registry.isResident("a"); i++)
+			Thread.sleep(10);
+
+		assertFalse(registry.isResident("a"));
+		assertTrue(registry.isResident("b"));
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManagerRegistry#close()}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testClose() throws IOException {
+		PrioritManager a = registry.get("a");
+		registry.close();
+
+		assertTrue(a.isClosed());
+		assertThrows(IllegalStateException.class, () -> registry.get("a"));
+		assertThrows(IllegalStateException.class, () -> registry.get("b"));
+		assertTrue(registry.getResidentListNames()
+				.isEmpty());
+		registry.close();
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManagerRegistry#preload(java.util.List)}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testPreload() throws IOException {
+		registry.preload(Arrays.asList("x", "y"));
+
+		assertEquals(2, registry.getResidentListNames()
+				.size());
+	}
+
+}
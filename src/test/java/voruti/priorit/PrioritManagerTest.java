@@ -2,15 +2,38 @@ package voruti.priorit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -48,7 +71,10 @@ class PrioritManagerTest {
 	 * from https://www.baeldung.com/java-delete-directory
 	 */
 	private static void deleteDirectory() throws IOException {
-		File dir = new File(TEST_DIR);
+		deleteDirectory(new File(TEST_DIR));
+	}
+
+	private static void deleteDirectory(File dir) throws IOException {
 		if (dir.exists()) {
 			Path path = dir.toPath();
 			Files.walk(path)
@@ -128,6 +154,49 @@ class PrioritManagerTest {
 		assertEquals(2, l3.size());
 	}
 
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#getAllSnapshots()} and
+	 * {@link voruti.priorit.PrioritManager#getNextSnapshot()}.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testGetAllSnapshots() throws IOException {
+		assertNull(prioritManager.getNextSnapshot());
+		for (int i = 0; i < 10; i++)
+			prioritManager.addItem(TestItems.createItem("item" + i, Priority.values()[i % 5], i));
+		// partially loaded items:
+		prioritManager.reload();
+		long memoryUsage = prioritManager.getEstimatedMemoryUsage();
+
+		List<ItemSnapshot> s1 = prioritManager.getAllSnapshots();
+		List<ItemSnapshot> s2 = prioritManager.getAllSnapshots();
+
+		assertEquals(prioritManager.getAllItems()
+				.stream()
+				.map(ItemJson::toJson)
+				.collect(Collectors.toList()),
+				s1.stream()
+						.map(snapshot -> ItemJson.toJson(snapshot.toItem()))
+						.collect(Collectors.toList()));
+		for (int i = 0; i < s1.size(); i++)
+			assertSame(s1.get(i), s2.get(i));
+		assertSame(s1.get(0), prioritManager.getNextSnapshot());
+		assertTrue(prioritManager.getEstimatedMemoryUsage() > memoryUsage);
+
+		// a changed item gets a new snapshot:
+		Item changed = s1.get(5)
+				.withTitle("Changed")
+				.toItem();
+		assertTrue(prioritManager.updateItem(changed));
+		ItemSnapshot s3 = prioritManager.getAllSnapshots()
+				.get(5);
+		assertNotSame(s1.get(5), s3);
+		assertEquals("Changed", s3.getTitle());
+		assertSame(s1.get(4), prioritManager.getAllSnapshots()
+				.get(4));
+	}
+
 	/**
 	 * Test method for {@link voruti.priorit.PrioritManager#getNextItem()}.
 	 */
@@ -173,4 +242,518 @@ class PrioritManagerTest {
 		assertTrue(l3.contains(i3));
 		assertEquals(2, l3.size());
 	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#getEventPublisher()}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testGetEventPublisher() throws InterruptedException {
+		BlockingQueue<ItemEvent> events = new LinkedBlockingQueue<>();
+		CountDownLatch completed = new CountDownLatch(1);
+		prioritManager.getEventPublisher()
+				.subscribe(new ItemEventPublisher.Subscriber() {
+					@Override
+					public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+						subscription.request(Long.MAX_VALUE);
+					}
+
+					@Override
+					public void onNext(ItemEvent event) {
+						events.add(event);
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+					}
+
+					@Override
+					public void onComplete() {
+						completed.countDown();
+					}
+				});
+
+		Item item = new Item();
+		prioritManager.addItem(item);
+		prioritManager.addItem(item); // already present, no event
+		item.setTitle("changed");
+		prioritManager.updateItem(item);
+		item.setPriority(Priority.HIGH);
+		prioritManager.updateItem(item);
+		item.setDone(true);
+		prioritManager.updateItem(item);
+
+		ItemEvent e1 = events.poll(5, TimeUnit.SECONDS);
+		ItemEvent e2 = events.poll(5, TimeUnit.SECONDS);
+		ItemEvent e3 = events.poll(5, TimeUnit.SECONDS);
+		ItemEvent e4 = events.poll(5, TimeUnit.SECONDS);
+
+		assertEquals(ItemEvent.Type.ADDED, e1.getType());
+		assertEquals(ItemEvent.Type.UPDATED, e2.getType());
+		assertEquals("changed", e2.getItem()
+				.getTitle());
+		assertEquals(ItemEvent.Type.PRIORITY_CHANGED, e3.getType());
+		assertEquals(ItemEvent.Type.COMPLETED, e4.getType());
+		assertEquals(e1.getSequence() + 3, e4.getSequence());
+		assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+
+		// closing completes the subscribers:
+		prioritManager.close();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#getEventPublisher()}
+	 * with an update of a partially loaded {@link Item}: the previous version in
+	 * the event is complete and the event can not be changed by a subscriber.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testEventOfPartiallyLoadedItem() throws IOException, InterruptedException {
+		Item item = new Item();
+		item.setTitle("old");
+		prioritManager.addItem(item);
+		prioritManager.reload(); // (partially loaded)
+
+		BlockingQueue<ItemEvent> events = new LinkedBlockingQueue<>();
+		prioritManager.getEventPublisher()
+				.subscribe(new ItemEventPublisher.Subscriber() {
+					@Override
+					public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+						subscription.request(Long.MAX_VALUE);
+					}
+
+					@Override
+					public void onNext(ItemEvent event) {
+						events.add(event);
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+					}
+
+					@Override
+					public void onComplete() {
+					}
+				});
+		item.setTitle("new");
+		assertTrue(prioritManager.updateItem(item));
+
+		ItemEvent event = events.poll(5, TimeUnit.SECONDS);
+		assertEquals("old", event.getPreviousItem()
+				.getTitle());
+		event.getItem()
+				.setTitle("changed by a subscriber");
+		assertEquals("new", event.getItem()
+				.getTitle());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#updateItem(Item)} from
+	 * several threads on the same uName: memory, file and events agree on the
+	 * last update.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	void testConcurrentUpdatesOfOneItem() throws Exception {
+		int threads = 4;
+		int updates = 50;
+		BlockingQueue<ItemEvent> events = new LinkedBlockingQueue<>();
+		prioritManager.getEventPublisher()
+				.subscribe(new ItemEventPublisher.Subscriber() {
+					@Override
+					public void onSubscribe(ItemEventPublisher.Subscription subscription) {
+						subscription.request(Long.MAX_VALUE);
+					}
+
+					@Override
+					public void onNext(ItemEvent event) {
+						events.add(event);
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+					}
+
+					@Override
+					public void onComplete() {
+					}
+				});
+		Item item = new Item();
+		assertTrue(prioritManager.addItem(item));
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(pool.submit(() -> {
+					Item update = item.copy();
+					for (int i = 0; i < updates; i++) {
+						update.setTitle("thread" + thread + "-" + i);
+						assertTrue(prioritManager.updateItem(update));
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			pool.shutdown();
+		}
+
+		List<ItemEvent> received = new ArrayList<>();
+		for (int i = 0; i <= threads * updates; i++)
+			received.add(events.poll(5, TimeUnit.SECONDS));
+		String title = prioritManager.getNextItem()
+				.getTitle();
+		assertEquals(title, new PrioritManager(new File(TEST_DIR)).getNextItem()
+				.getTitle());
+		assertEquals(title, received.get(received.size() - 1)
+				.getItem()
+				.getTitle());
+		for (int i = 1; i < received.size(); i++)
+			assertEquals(received.get(i - 1)
+					.getItem()
+					.getTitle(),
+					received.get(i)
+							.getPreviousItem()
+							.getTitle());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManager#exportItems(java.io.OutputStream)} and
+	 * {@link voruti.priorit.PrioritManager#importItems(java.io.InputStream, boolean)}.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testExportImportItems() throws IOException {
+		for (int i = 0; i < 1500; i++) {
+			Item item = new Item();
+			item.setTitle("Item " + i);
+			item.setText("Text\nwith \"quotes\"");
+			prioritManager.addItem(item);
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		long exported = prioritManager.exportItems(outputStream);
+
+		// not inside TEST_DIR, as the directory is loaded recursively:
+		File otherDir = new File(TEST_DIR + "Import");
+		deleteDirectory(otherDir);
+		PrioritManager other = new PrioritManager(otherDir);
+		long imported = other.importItems(new ByteArrayInputStream(outputStream.toByteArray()), false);
+		long importedAgain = other.importItems(new ByteArrayInputStream(outputStream.toByteArray()), false);
+
+		assertEquals(1500, exported);
+		assertEquals(1500, imported);
+		assertEquals(0, importedAgain);
+		List<Item> originalItems = prioritManager.getAllItems();
+		List<Item> otherItems = other.getAllItems();
+		assertEquals(originalItems, otherItems);
+		assertEquals(originalItems.get(42)
+				.getText(),
+				otherItems.get(42)
+						.getText());
+
+		deleteDirectory(otherDir);
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManager#importItems(java.io.InputStream, boolean)}
+	 * with invalid lines, which are skipped.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testImportInvalidLines() throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8)) {
+			writer.write("{\"uName\":\"first\"}\n");
+			writer.write("{\"uName\":\"../escaped\"}\n");
+			writer.write("{\"uName\":\"a\\\\b\"}\n");
+			writer.write("no json\n");
+			writer.write("{\"uName\":\"last\",\"title\":null}\n");
+		}
+
+		long imported = prioritManager.importItems(new ByteArrayInputStream(outputStream.toByteArray()), false);
+
+		assertEquals(2, imported);
+		assertEquals(2, prioritManager.getAllItems()
+				.size());
+		assertFalse(new File("escaped.xml").exists());
+		assertEquals(1, prioritManager.searchItem("l.*")
+				.size());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#updateItem(Item)},
+	 * {@link voruti.priorit.PrioritManager#getVersion()} and
+	 * {@link voruti.priorit.PrioritManager#reload()}.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testOrderAfterUpdate() throws IOException {
+		Item i1 = new Item();
+		i1.setPriority(Priority.HIGH);
+		Item i2 = new Item();
+		i2.setPriority(Priority.MED);
+		prioritManager.addItem(i1);
+		prioritManager.addItem(i2);
+		long v1 = prioritManager.getVersion();
+		List<Item> l1 = prioritManager.getAllItems();
+
+		i2.setPriority(Priority.VERY_HIGH);
+		prioritManager.updateItem(i2);
+		long v2 = prioritManager.getVersion();
+		List<Item> l2 = prioritManager.getAllItems();
+
+		// changed by another manager on the same directory:
+		Item i3 = new Item();
+		i3.setPriority(Priority.VERY_HIGH);
+		i3.setEtaDate(new Date());
+		new PrioritManager(new File(TEST_DIR)).addItem(i3);
+		List<Item> l3 = prioritManager.getAllItems();
+		prioritManager.reload();
+		long v3 = prioritManager.getVersion();
+		List<Item> l4 = prioritManager.getAllItems();
+
+		assertEquals(i1, l1.get(0));
+		assertEquals(i2, l2.get(0));
+		assertEquals(Priority.VERY_HIGH, l2.get(0)
+				.getPriority());
+		assertTrue(v2 > v1);
+		assertEquals(2, l3.size());
+		assertTrue(v3 > v2);
+		assertEquals(i3, l4.get(0));
+		assertEquals(3, l4.size());
+
+		// returned items are copies:
+		l4.get(0)
+				.setDone(true);
+		assertEquals(i3, prioritManager.getNextItem());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#updateItem(Item)} with
+	 * a copy of a partially loaded {@link Item} taken before the {@link Item} was
+	 * updated elsewhere: the copy is read and saved with its own fields.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testUpdateOfOutdatedCopy() throws IOException {
+		Item item = new Item();
+		item.setTitle("title");
+		item.setText("text");
+		prioritManager.addItem(item);
+		prioritManager.reload(); // (partially loaded)
+
+		Item copy = prioritManager.getNextItem();
+		Item other = prioritManager.getNextItem();
+		other.setPriority(Priority.HIGH);
+		assertTrue(prioritManager.updateItem(other));
+
+		assertEquals("title", copy.getTitle());
+		assertEquals("text", copy.getText());
+		copy.setDone(true);
+		assertTrue(prioritManager.updateItem(copy));
+
+		// the last update wins:
+		prioritManager.reload();
+		Item saved = prioritManager.getNextItem();
+		assertEquals("title", saved.getTitle());
+		assertEquals("text", saved.getText());
+		assertEquals(Priority.VERY_LOW, saved.getPriority());
+		assertTrue(saved.isDone());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#searchItem(String)}:
+	 * the fields loaded by one search are kept for the next ones.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testSearchKeepsLoadedFields() throws IOException {
+		Item item = new Item();
+		item.setTitle("title");
+		prioritManager.addItem(item);
+		prioritManager.reload(); // (partially loaded)
+		long memoryUsage = prioritManager.getEstimatedMemoryUsage();
+
+		assertEquals(1, prioritManager.searchItem("title")
+				.size());
+
+		assertTrue(prioritManager.getEstimatedMemoryUsage() > memoryUsage);
+		assertFalse(prioritManager.getNextItem()
+				.toString()
+				.contains("partially loaded"));
+		assertEquals(1, prioritManager.searchItem("title")
+				.size());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.PrioritManager#updateItems(List, java.util.function.UnaryOperator)}:
+	 * all or none of the {@link Item items} are saved.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testUpdateItems() throws IOException {
+		Item a = new Item();
+		a.setTitle("a");
+		Item b = new Item();
+		b.setTitle("b");
+		prioritManager.addItem(a);
+		prioritManager.addItem(b);
+		List<String> uNames = Arrays.asList(a.getuName(), b.getuName());
+
+		assertTrue(prioritManager.updateItems(uNames, items -> {
+			items.forEach(item -> item.setTitle(item.getTitle() + "1"));
+			return items;
+		}));
+		assertEquals(Arrays.asList("a1", "b1"), titles(uNames));
+
+		// the second item can not be saved, so the first one is restored:
+		assertFalse(prioritManager.updateItems(uNames, items -> {
+			items.get(0)
+					.setTitle("a2");
+			Item second = items.get(1);
+			Item unsaveable = new Item(second.getuName(), null, null, null, second.getEtaDate(), Priority.MED,
+					false);
+			unsaveable.setHydrator(() -> {
+				throw new IOException("Not loadable");
+			});
+			return Arrays.asList(items.get(0), unsaveable);
+		}));
+		assertEquals(Arrays.asList("a1", "b1"), titles(uNames));
+		prioritManager.reload();
+		assertEquals(Arrays.asList("a1", "b1"), titles(uNames));
+	}
+
+	private List<String> titles(List<String> uNames) {
+		return uNames.stream()
+				.map(uName -> prioritManager.getAllItems()
+						.stream()
+						.filter(item -> item.getuName()
+								.equals(uName))
+						.findFirst()
+						.get()
+						.getTitle())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Large texts are stored once in the blob store and loaded lazily.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testLargeText() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			builder.append("Line ")
+					.append(i)
+					.append(" of a long note.\n");
+		String text = builder.toString();
+		Item i1 = new Item();
+		i1.setText(text);
+		Item i2 = new Item();
+		i2.setText(text);
+		prioritManager.addItem(i1);
+		prioritManager.addItem(i2);
+
+		String xml = new String(Files.readAllBytes(new File(TEST_DIR, i1.getuName() + ".xml").toPath()),
+				StandardCharsets.UTF_8);
+		long blobs;
+		try (Stream<Path> paths = Files.walk(new File(TEST_DIR, "blobs").toPath())) {
+			blobs = paths.filter(Files::isRegularFile)
+					.count();
+		}
+		Item loaded = new PrioritManager(new File(TEST_DIR)).getAllItems()
+				.get(0);
+
+		assertFalse(xml.contains("long note"));
+		assertEquals(1, blobs);
+		String textHash = loaded.getTextHash(); // loads the other fields, but not the text
+		assertTrue(loaded.toString()
+				.contains("text=<" + textHash + ">"));
+		assertEquals(text, loaded.getText());
+		assertEquals(text, prioritManager.getNextItem()
+				.getText());
+
+		// unchanged stored text is kept, changed text stored inline again:
+		loaded.setTitle("Changed");
+		prioritManager.updateItem(loaded);
+		assertEquals(text, prioritManager.searchItem("Changed")
+				.get(0)
+				.getText());
+		loaded.setText("short");
+		prioritManager.updateItem(loaded);
+		assertEquals("short", new PrioritManager(new File(TEST_DIR)).searchItem("Changed")
+				.get(0)
+				.getText());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.PrioritManager#reload()}: blobs no
+	 * longer referenced are removed, manipulated hashes are not used as paths.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void testUnusedBlobs() throws IOException {
+		char[] longText = new char[2000];
+		Arrays.fill(longText, 'a');
+		Item item = new Item();
+		item.setText(new String(longText));
+		prioritManager.addItem(item);
+		Arrays.fill(longText, 'b');
+		item.setText(new String(longText));
+		prioritManager.updateItem(item);
+		Path blobs = new File(TEST_DIR, "blobs").toPath();
+		assertEquals(2, countFiles(blobs));
+
+		// recently stored blobs are kept (they may be referenced by other processes):
+		prioritManager.reload();
+		assertEquals(2, countFiles(blobs));
+
+		try (Stream<Path> paths = Files.walk(blobs)) {
+			for (Path path : paths.filter(Files::isRegularFile)
+					.collect(Collectors.toList()))
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+		}
+		prioritManager.reload();
+		assertEquals(1, countFiles(blobs));
+		Item loaded = prioritManager.getNextItem();
+		assertTrue(loaded.peekTextHash() != null);
+		assertTrue(loaded.toString()
+				.contains("partially loaded"));
+		assertEquals(new String(longText), loaded.getText());
+
+		// a manipulated hash is rejected:
+		Path file = new File(TEST_DIR, item.getuName() + ".xml").toPath();
+		String xml = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		Files.write(file, xml.replace(loaded.peekTextHash(), "../../../" + item.getuName())
+				.getBytes(StandardCharsets.UTF_8));
+		prioritManager.reload();
+		assertThrows(UncheckedIOException.class, prioritManager.getNextItem()::getText);
+	}
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			return paths.filter(Files::isRegularFile)
+					.count();
+		}
+	}
+
 }
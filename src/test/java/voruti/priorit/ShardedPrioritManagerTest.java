@@ -0,0 +1,230 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static voruti.priorit.TestItems.createItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class ShardedPrioritManagerTest {
+
+	private static final String TEST_DIR = "testShards";
+
+	private static final List<File> SHARD_DIRS = Arrays.asList(new File(TEST_DIR, "s0"), new File(TEST_DIR, "s1"),
+			new File(TEST_DIR, "s2"));
+
+	private ShardedPrioritManager shardedManager;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterAll
+	static void tearDownAfterClass() throws Exception {
+		deleteDirectory();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		deleteDirectory();
+
+		shardedManager = new ShardedPrioritManager(SHARD_DIRS);
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterEach
+	void tearDown() throws Exception {
+		shardedManager.close();
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Path path = dir.toPath();
+			Files.walk(path)
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#ShardedPrioritManager(java.util.List)}.
+	 */
+	@Test
+	void testShardedPrioritManager() {
+		assertEquals(3, shardedManager.getShardCount());
+		assertEquals(SHARD_DIRS, shardedManager.getDirectories());
+		for (File dir : SHARD_DIRS)
+			assertTrue(dir.isDirectory());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#ShardedPrioritManager(java.util.List)}.
+	 */
+	@Test
+	void testShardedPrioritManagerFailingShard() throws IOException {
+		File file = new File(TEST_DIR, "file");
+		assertTrue(file.createNewFile());
+
+		List<File> dirs = Arrays.asList(SHARD_DIRS.get(0), file, SHARD_DIRS.get(1));
+		assertThrows(IOException.class, () -> new ShardedPrioritManager(dirs));
+
+		// the other shards are usable again:
+		shardedManager.close();
+		shardedManager = new ShardedPrioritManager(SHARD_DIRS);
+		assertTrue(shardedManager.addItem(createItem("a", Priority.MED, 0)));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#addItem(voruti.priorit.Item)}.
+	 */
+	@Test
+	void testAddItem() {
+		Item item = createItem("abc", Priority.MED, 3);
+
+		boolean r1 = shardedManager.addItem(item);
+		boolean r2 = shardedManager.addItem(item);
+
+		assertTrue(r1);
+		assertFalse(r2);
+		assertTrue(new File(SHARD_DIRS.get(ShardedPrioritManager.shardIndex("abc", 3)), "abc.xml").exists());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.ShardedPrioritManager#getAllItems()}
+	 * and {@link voruti.priorit.ShardedPrioritManager#getNextItem()}.
+	 */
+	@Test
+	void testGetAllItems() {
+		assertTrue(shardedManager.getAllItems()
+				.isEmpty());
+		assertNull(shardedManager.getNextItem());
+
+		for (int i = 0; i < 30; i++)
+			shardedManager.addItem(createItem("item" + i, Priority.values()[i % 4], i % 7));
+		Item urgent = createItem("urgent", Priority.VERY_HIGH, 0);
+		shardedManager.addItem(urgent);
+
+		List<Item> items = shardedManager.getAllItems();
+
+		assertEquals(31, items.size());
+		for (int i = 1; i < items.size(); i++)
+			assertTrue(items.get(i - 1)
+					.compareTo(items.get(i)) < 0);
+		assertEquals(urgent, shardedManager.getNextItem());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#searchItem(java.lang.String)}.
+	 */
+	@Test
+	void testSearchItem() {
+		for (int i = 0; i < 10; i++)
+			shardedManager.addItem(createItem("item" + i, Priority.LOW, i));
+
+		List<Item> found = shardedManager.searchItem("item[0-4]");
+
+		assertEquals(5, found.size());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#rebalance(java.util.List, java.util.List)}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testRebalance() throws IOException {
+		StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+			longText.append((char) ('a' + i % 26));
+		for (int i = 0; i < 20; i++) {
+			Item item = createItem("item" + i, Priority.LOW, i);
+			item.setText(longText.toString() + i); // stored separately
+			shardedManager.addItem(item);
+		}
+		shardedManager.close();
+
+		List<File> newDirs = Arrays.asList(SHARD_DIRS.get(0), SHARD_DIRS.get(1), SHARD_DIRS.get(2),
+				new File(TEST_DIR, "s3"), new File(TEST_DIR, "s4"));
+		int moved = ShardedPrioritManager.rebalance(SHARD_DIRS, newDirs);
+
+		assertTrue(moved > 0);
+		shardedManager = new ShardedPrioritManager(newDirs);
+		assertEquals(20, shardedManager.getAllItems()
+				.size());
+		for (int i = 0; i < 20; i++)
+			assertTrue(new File(newDirs.get(ShardedPrioritManager.shardIndex("item" + i, 5)), "item" + i + ".xml")
+					.exists());
+		for (Item item : shardedManager.getAllItems())
+			assertEquals(longText.toString() + item.getuName()
+					.substring(4), item.getText());
+		assertEquals(0, ShardedPrioritManager.rebalance(newDirs, newDirs));
+		// copied texts are not kept in the old shards:
+		assertEquals(20, countFiles(TextBlobStore.BLOB_FILE_ENDING));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.ShardedPrioritManager#rebalance(java.util.List, java.util.List)}
+	 * with items in subdirectories and fewer shards.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testRebalanceNestedAndShrink() throws IOException {
+		List<File> newDirs = Arrays.asList(SHARD_DIRS.get(0), SHARD_DIRS.get(1));
+		PrioritManager nested = new PrioritManager(new File(SHARD_DIRS.get(2), "nested"));
+		for (int i = 0; i < 10; i++)
+			assertTrue(nested.addItem(createItem("nested" + i, Priority.LOW, i)));
+		shardedManager.close();
+
+		assertEquals(10, ShardedPrioritManager.rebalance(SHARD_DIRS, newDirs));
+
+		assertFalse(SHARD_DIRS.get(2)
+				.exists());
+		for (int i = 0; i < 10; i++)
+			assertTrue(new File(newDirs.get(ShardedPrioritManager.shardIndex("nested" + i, 2)), "nested" + i + ".xml")
+					.exists());
+		shardedManager = new ShardedPrioritManager(newDirs);
+		assertEquals(10, shardedManager.getAllItems()
+				.size());
+	}
+
+	private static long countFiles(String fileEnding) throws IOException {
+		try (Stream<Path> paths = Files.walk(new File(TEST_DIR).toPath())) {
+			return paths.filter(p -> p.toString()
+					.endsWith(fileEnding))
+					.count();
+		}
+	}
+
+}
@@ -0,0 +1,421 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import voruti.priorit.WorkloadGenerator.Operation;
+
+/**
+ * Soak test of {@link PrioritManager}: populates a store with
+ * {@link WorkloadGenerator generated} items, then runs mixed read, write and
+ * search traffic from several threads for a fixed duration and reports
+ * throughput, latency percentiles, heap and GC usage and open file handles.
+ * Failed operations, wrong search results and logged warnings (e.g. of items
+ * whose fields can not be loaded) are counted as errors.
+ * Run {@link #main(String[])} for larger stores and longer runs:
+ * {@code SoakTest <items> <threads> <seconds> [<seed> <skew>]}.
+ *
+ * @author voruti
+ */
+class SoakTest {
+
+	/**
+	 * Default weights of the operations (by {@link Operation} ordinal).
+	 */
+	private static final int[] DEFAULT_MIX = { 30, 30, 10, 10, 19, 1 };
+
+	/**
+	 * Latency histogram with buckets growing by 3 % (bounded memory for long
+	 * runs).
+	 */
+	static final class Histogram {
+
+		private static final double BASE = 1.03;
+		private static final double LOG_BASE = Math.log(BASE);
+
+		private final long[] counts = new long[1000];
+		private long total = 0;
+
+		void record(long nanos) {
+			int index = nanos < 1 ? 0 : Math.min(counts.length - 1, (int) (Math.log(nanos) / LOG_BASE));
+			counts[index]++;
+			total++;
+		}
+
+		void add(Histogram other) {
+			for (int i = 0; i < counts.length; i++)
+				counts[i] += other.counts[i];
+			total += other.total;
+		}
+
+		long getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return the upper bound of the bucket containing the percentile in
+		 *         milliseconds
+		 */
+		double percentileMillis(double percentile) {
+			long rank = (long) Math.ceil(percentile * total);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && seen > 0)
+					return Math.pow(BASE, i + 1) / 1e6;
+			}
+			return 0;
+		}
+
+	}
+
+	/**
+	 * Counts the log records of at least {@link Level#WARNING}; some failures
+	 * (e.g. of background work) are only logged.
+	 */
+	static final class WarningCounter extends Handler {
+
+		private final AtomicLong count = new AtomicLong();
+
+		WarningCounter() {
+			setLevel(Level.WARNING);
+		}
+
+		@Override
+		public void publish(LogRecord record) {
+			if (isLoggable(record))
+				count.incrementAndGet();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		long getCount() {
+			return count.get();
+		}
+
+	}
+
+	/**
+	 * Result of one run.
+	 */
+	static final class Result {
+
+		final long durationMillis;
+		final Histogram[] histograms;
+		final long errors;
+		final long warnings;
+		final long heapBefore;
+		final long heapAfter;
+		final long gcCount;
+		final long gcMillis;
+		final long fileHandlesBefore;
+		final long fileHandlesAfter;
+
+		private Result(long durationMillis, Histogram[] histograms, long errors, long warnings, long heapBefore,
+				long heapAfter, long gcCount, long gcMillis, long fileHandlesBefore, long fileHandlesAfter) {
+			this.durationMillis = durationMillis;
+			this.histograms = histograms;
+			this.errors = errors;
+			this.warnings = warnings;
+			this.heapBefore = heapBefore;
+			this.heapAfter = heapAfter;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+			this.fileHandlesBefore = fileHandlesBefore;
+			this.fileHandlesAfter = fileHandlesAfter;
+		}
+
+		long getOperations() {
+			long operations = 0;
+			for (Histogram histogram : histograms)
+				operations += histogram.getTotal();
+			return operations;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(String.format(
+					"operations=%d, errors=%d, warnings=%d, ops/s=%.1f, heap=%dKiB->%dKiB, gc=%d (%dms), fileHandles=%d->%d",
+					getOperations(), errors, warnings, getOperations() * 1000.0 / durationMillis, heapBefore / 1024,
+					heapAfter / 1024, gcCount, gcMillis, fileHandlesBefore, fileHandlesAfter));
+			for (Operation operation : Operation.values()) {
+				Histogram histogram = histograms[operation.ordinal()];
+				builder.append(String.format("%n  %-9s n=%-8d p50=%.3fms p99=%.3fms p99.9=%.3fms", operation,
+						histogram.getTotal(), histogram.percentileMillis(0.5), histogram.percentileMillis(0.99),
+						histogram.percentileMillis(0.999)));
+			}
+			return builder.toString();
+		}
+
+	}
+
+	/**
+	 * Runs the soak test in {@code directory}, which is deleted afterwards.
+	 *
+	 * @param directory      the (new) directory of the store
+	 * @param items          the number of items to populate the store with
+	 * @param threads        the number of concurrent threads
+	 * @param durationMillis the duration of the traffic
+	 * @param seed           the seed of the {@link WorkloadGenerator generators}
+	 * @param skew           the skew of the {@link WorkloadGenerator generators}
+	 * @param mix            the weights of the {@link Operation operations}
+	 * @return the {@link Result}
+	 */
+	static Result run(File directory, int items, int threads, long durationMillis, long seed, double skew,
+			int[] mix) throws Exception {
+		long baseMillis = LocalDate.now()
+				.atStartOfDay(ZoneId.systemDefault())
+				.toInstant()
+				.toEpochMilli();
+		Logger logger = Logger.getLogger("voruti.priorit");
+		WarningCounter warningCounter = new WarningCounter();
+		logger.addHandler(warningCounter);
+		PrioritManager prioritManager = new PrioritManager(directory);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			WorkloadGenerator populator = new WorkloadGenerator(seed, "p", 50, skew, baseMillis);
+			for (int i = 0; i < items; i++)
+				prioritManager.addItem(populator.nextItem());
+
+			System.gc();
+			long heapBefore = usedHeap();
+			long fileHandlesBefore = openFileHandles();
+			long gcCountBefore = gcCount();
+			long gcMillisBefore = gcMillis();
+
+			long end = System.nanoTime() + durationMillis * 1000000L;
+			List<Future<Histogram[]>> futures = new ArrayList<>();
+			long[] errors = new long[threads];
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(pool.submit(() -> {
+					WorkloadGenerator generator = new WorkloadGenerator(seed + 1 + thread, "t" + thread + "-", 50,
+							skew, baseMillis);
+					Histogram[] histograms = newHistograms();
+					Item[] lastAdded = { null };
+					while (System.nanoTime() < end) {
+						Operation operation = generator.nextOperation(mix);
+						long start = System.nanoTime();
+						try {
+							if (!execute(prioritManager, generator, populator, items, operation, lastAdded))
+								errors[thread]++;
+						} catch (IOException | RuntimeException e) {
+							e.printStackTrace();
+							errors[thread]++;
+						}
+						histograms[operation.ordinal()].record(System.nanoTime() - start);
+					}
+					return histograms;
+				}));
+			}
+
+			Histogram[] histograms = newHistograms();
+			for (Future<Histogram[]> future : futures) {
+				Histogram[] threadHistograms = future.get();
+				for (int i = 0; i < histograms.length; i++)
+					histograms[i].add(threadHistograms[i]);
+			}
+
+			long gcCount = gcCount() - gcCountBefore;
+			long gcMillis = gcMillis() - gcMillisBefore;
+			System.gc();
+			long totalErrors = 0;
+			for (long threadErrors : errors)
+				totalErrors += threadErrors;
+			return new Result(durationMillis, histograms, totalErrors, warningCounter.getCount(), heapBefore,
+					usedHeap(), gcCount, gcMillis, fileHandlesBefore, openFileHandles());
+		} finally {
+			// no thread may write to the directory while it is deleted:
+			pool.shutdownNow();
+			if (!pool.awaitTermination(1, TimeUnit.MINUTES))
+				throw new IllegalStateException("Soak threads did not terminate");
+			prioritManager.close();
+			deleteDirectory(directory);
+			logger.removeHandler(warningCounter);
+		}
+	}
+
+	/**
+	 * @param lastAdded the last {@link Item} added by the calling thread (which is
+	 *                  never updated); updated by {@link Operation#ADD}
+	 * @return {@code false} if the operation failed or returned a wrong result
+	 */
+	private static boolean execute(PrioritManager prioritManager, WorkloadGenerator generator,
+			WorkloadGenerator populator, int items, Operation operation, Item[] lastAdded) throws IOException {
+		switch (operation) {
+		case READ_ALL:
+			return prioritManager.getAllItems()
+					.size() >= items;
+		case READ_NEXT:
+			return items == 0 || prioritManager.getNextItem() != null;
+		case SEARCH:
+			String query = generator.nextSearch();
+			List<Item> found = prioritManager.searchItem(query);
+			for (Item item : found)
+				if (item.getTitle()
+						.trim()
+						.isEmpty() || !matches(item, query))
+					return false;
+			Item added = lastAdded[0];
+			return added == null || !matches(added, query) || found.contains(added);
+		case ADD:
+			Item item = generator.nextItem();
+			if (!prioritManager.addItem(item))
+				return false;
+			lastAdded[0] = item;
+			return true;
+		case UPDATE:
+			// hot items are updated more often:
+			return items == 0 || prioritManager.updateItem(generator.nextItem(populator.uName(generator.skewed(items))));
+		case RELOAD:
+			prioritManager.reload();
+			return true;
+		default:
+			throw new IllegalArgumentException(String.valueOf(operation));
+		}
+	}
+
+	/**
+	 * @return {@code true} if {@link PrioritManager#searchItem(String)} has to
+	 *         find {@link Item item} with {@code query}
+	 */
+	private static boolean matches(Item item, String query) {
+		return item.getTitle()
+				.matches(query)
+				|| item.getText()
+						.matches(query)
+				|| item.getuName()
+						.matches(query)
+				|| item.getCategories()
+						.stream()
+						.anyMatch(category -> category.matches(query));
+	}
+
+	private static Histogram[] newHistograms() {
+		Histogram[] histograms = new Histogram[Operation.values().length];
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = new Histogram();
+		return histograms;
+	}
+
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean()
+				.getHeapMemoryUsage()
+				.getUsed();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, bean.getCollectionCount());
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, bean.getCollectionTime());
+		return millis;
+	}
+
+	/**
+	 * @return the number of open file descriptors of this process; {@code -1} if
+	 *         it is not available (e.g. on Windows)
+	 */
+	static long openFileHandles() {
+		OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+		if (bean instanceof com.sun.management.UnixOperatingSystemMXBean)
+			return ((com.sun.management.UnixOperatingSystemMXBean) bean).getOpenFileDescriptorCount();
+		return -1;
+	}
+
+	private static void deleteDirectory(File dir) throws IOException {
+		if (dir.exists()) {
+			try (Stream<Path> paths = Files.walk(dir.toPath())) {
+				paths.sorted(Comparator.reverseOrder())
+						.map(Path::toFile)
+						.forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * The same seed generates the same items.
+	 */
+	@Test
+	void testGeneratorIsDeterministic() {
+		WorkloadGenerator g1 = new WorkloadGenerator(7, "x", 10, 1.0, 0);
+		WorkloadGenerator g2 = new WorkloadGenerator(7, "x", 10, 1.0, 0);
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(ItemJson.toJson(g1.nextItem()), ItemJson.toJson(g2.nextItem()));
+			assertEquals(g1.nextOperation(DEFAULT_MIX), g2.nextOperation(DEFAULT_MIX));
+		}
+	}
+
+	/**
+	 * Short run as part of the test suite; file handles must not leak.
+	 *
+	 * @param directory a temporary directory
+	 * @throws Exception
+	 */
+	@Test
+	void testSoak(@TempDir Path directory) throws Exception {
+		Result result = run(directory.toFile(), 300, 4, 1000, 42, 1.0, DEFAULT_MIX);
+
+		assertTrue(result.getOperations() > 0, result::toString);
+		assertEquals(0, result.errors, result::toString);
+		assertEquals(0, result.warnings, result::toString);
+		if (result.fileHandlesBefore >= 0)
+			assertTrue(result.fileHandlesAfter - result.fileHandlesBefore < 20, result::toString);
+	}
+
+	/**
+	 * @param args {@code <items> <threads> <seconds> [<seed> <skew>]}
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+		double skew = args.length > 4 ? Double.parseDouble(args[4]) : 1.0;
+
+		File directory = Files.createTempDirectory("priorit-soak")
+				.toFile();
+		System.out.println("SoakTest: " + run(directory, items, threads, seconds * 1000, seed, skew, DEFAULT_MIX));
+	}
+
+}
@@ -0,0 +1,40 @@
+package voruti.priorit;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Creates {@link Item items} for tests.
+ *
+ * @author voruti
+ */
+public final class TestItems {
+
+	/**
+	 * The current day as epoch day (when the tests started).
+	 */
+	public static final int TODAY = (int) LocalDate.now()
+			.toEpochDay();
+
+	private TestItems() {
+	}
+
+	/**
+	 * @param uName    the uName
+	 * @param priority the {@link Priority}
+	 * @param days     the etaDate as days from {@link #TODAY} (at noon)
+	 * @return the new {@link Item}
+	 */
+	public static Item createItem(String uName, Priority priority, int days) {
+		Item item = new Item();
+		item.setuName(uName);
+		item.setPriority(priority);
+		item.setEtaDate(Date.from(LocalDate.ofEpochDay(TODAY + days)
+				.atTime(12, 0)
+				.atZone(ZoneId.systemDefault())
+				.toInstant()));
+		return item;
+	}
+
+}
@@ -0,0 +1,41 @@
+package voruti.priorit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author voruti
+ *
+ */
+class UNameGeneratorTest {
+
+	/**
+	 * Test method for {@link voruti.priorit.UNameGenerator#next(long)}.
+	 */
+	@Test
+	void testNext() {
+		long timestamp = System.currentTimeMillis() + 10000000L;
+		Set<String> uNames = new HashSet<>();
+		String previous = "";
+
+		for (int i = 0; i < 100000; i++) {
+			String uName = UNameGenerator.next(timestamp);
+
+			assertTrue(uName.matches("[0-9]*_[0-9]{3}"), uName);
+			assertTrue(uName.compareTo(previous) > 0, uName);
+			uNames.add(uName);
+			previous = uName;
+		}
+
+		assertEquals(100000, uNames.size());
+		// a later time stamp is taken as is:
+		long later = Long.parseLong(previous.split("_")[0]) + 1000;
+		assertEquals(later + "_100", UNameGenerator.next(later));
+	}
+
+}
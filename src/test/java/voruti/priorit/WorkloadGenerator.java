@@ -0,0 +1,137 @@
+package voruti.priorit;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic {@link Item items} and operations for
+ * load tests: the same seed and parameters always produce the same sequence.
+ * Skewed choices prefer low indices (hot items and categories): index
+ * {@code n * r^(1 + skew)} for a uniform {@code r}; a skew of {@code 0} is
+ * uniform.
+ *
+ * @author voruti
+ */
+final class WorkloadGenerator {
+
+	/**
+	 * Kinds of operations on a {@link PrioritManager}.
+	 */
+	enum Operation {
+		READ_ALL, READ_NEXT, SEARCH, ADD, UPDATE, RELOAD
+	}
+
+	private static final String[] WORDS = { "fix", "login", "report", "update", "server", "meeting", "invoice",
+			"backup", "review", "deploy", "customer", "draft", "release", "budget", "migrate", "test", "order", "call",
+			"design", "cleanup" };
+
+	private static final long DAY_MILLIS = 86400000L;
+
+	private final Random random;
+
+	private final String prefix;
+
+	private final int categories;
+
+	private final double skew;
+
+	private final long baseMillis;
+
+	private int created = 0;
+
+	/**
+	 * @param seed       the seed
+	 * @param prefix     the prefix of the generated uNames (distinct per
+	 *                   generator writing to the same list)
+	 * @param categories the number of distinct categories
+	 * @param skew       how strongly hot items and categories are preferred
+	 * @param baseMillis the day the etaDates are relative to
+	 */
+	WorkloadGenerator(long seed, String prefix, int categories, double skew, long baseMillis) {
+		this.random = new Random(seed);
+		this.prefix = prefix;
+		this.categories = categories;
+		this.skew = skew;
+		this.baseMillis = baseMillis;
+	}
+
+	/**
+	 * @param index the index of the item
+	 * @return the uName of the {@code index}-th {@link Item} of this generator
+	 */
+	String uName(int index) {
+		return String.format("%s%08d", prefix, index);
+	}
+
+	/**
+	 * @return a new {@link Item} with the next uName
+	 */
+	Item nextItem() {
+		return nextItem(uName(created++));
+	}
+
+	/**
+	 * @param uName the uName of the {@link Item}
+	 * @return a random {@link Item} with {@code uName}
+	 */
+	Item nextItem(String uName) {
+		Item item = new Item();
+		item.setuName(uName);
+		item.setTitle(words(2 + random.nextInt(4)));
+		// some long notes, which are stored separately:
+		item.setText(random.nextInt(20) == 0 ? words(300 + random.nextInt(300)) : words(random.nextInt(30)));
+		List<String> itemCategories = new ArrayList<>();
+		for (int i = random.nextInt(3); i >= 0; i--)
+			itemCategories.add("c" + skewed(categories));
+		item.setCategories(itemCategories);
+		item.setEtaDate(new Date(baseMillis + (random.nextInt(121) - 30) * DAY_MILLIS));
+		item.setPriority(Priority.values()[random.nextInt(Priority.values().length)]);
+		item.setDone(random.nextInt(10) == 0);
+		return item;
+	}
+
+	/**
+	 * @param n the number of choices
+	 * @return a skewed random index in {@code [0, n)}
+	 */
+	int skewed(int n) {
+		return Math.min(n - 1, (int) (n * Math.pow(random.nextDouble(), 1 + skew)));
+	}
+
+	/**
+	 * @param weights the weight of every {@link Operation} (by ordinal)
+	 * @return a random {@link Operation}
+	 */
+	Operation nextOperation(int[] weights) {
+		int total = 0;
+		for (int weight : weights)
+			total += weight;
+		int r = random.nextInt(total);
+		for (int i = 0; i < weights.length; i++) {
+			r -= weights[i];
+			if (r < 0)
+				return Operation.values()[i];
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @return a regEx for {@link PrioritManager#searchItem(String)}
+	 */
+	String nextSearch() {
+		return ".*" + WORDS[skewed(WORDS.length)] + ".*";
+	}
+
+	private String words(int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				builder.append(i % 12 == 0 ? '\n' : ' ');
+			builder.append(WORDS[skewed(WORDS.length)]);
+		}
+		return builder.toString();
+	}
+
+}
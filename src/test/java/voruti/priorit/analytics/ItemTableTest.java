@@ -0,0 +1,171 @@
+package voruti.priorit.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.Priority;
+
+/**
+ * @author voruti
+ *
+ */
+class ItemTableTest {
+
+	private static final String[] CATEGORIES = { "home", "none", "work" };
+
+	private static List<Item> createItems(int count, long seed) {
+		Random random = new Random(seed);
+		LocalDate today = LocalDate.now();
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Item item = new Item();
+			item.setEtaDate(Date.from(today.plusDays(random.nextInt(60) - 30)
+					.atStartOfDay(ZoneId.systemDefault())
+					.toInstant()));
+			item.setPriority(Priority.values()[random.nextInt(Priority.values().length)]);
+			item.setDone(random.nextInt(4) == 0);
+			item.setCategories(random.nextBoolean() ? Arrays.asList(CATEGORIES[random.nextInt(3)])
+					: Arrays.asList(CATEGORIES[0], CATEGORIES[2]));
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * The bitmap filters and aggregations give the same results as checking
+	 * every {@link Item}.
+	 */
+	@Test
+	void testFilters() {
+		List<Item> items = createItems(1000, 1);
+		ItemTable table = ItemTable.of(items);
+		int today = (int) LocalDate.now()
+				.toEpochDay();
+
+		long[] highOverdue = ItemTable.and(table.withPriority(Priority.HIGH), table.overdue(today));
+		Map<String, Long> perCategory = table.countByCategory(highOverdue);
+		long[] perPriority = table.countByPriority(table.overdue(today));
+
+		assertEquals(1000, table.size());
+		assertEquals(1000, ItemTable.count(table.all()));
+		assertEquals(Arrays.asList(CATEGORIES), table.getCategories());
+		for (String category : CATEGORIES)
+			assertEquals(items.stream()
+					.filter(item -> item.getPriority() == Priority.HIGH && !item.isDone()
+							&& Item.daysLeft(item.getEtaDate()) < 0 && item.getCategories()
+									.contains(category))
+					.count(), (long) perCategory.get(category));
+		for (Priority priority : Priority.values())
+			assertEquals(items.stream()
+					.filter(item -> item.getPriority() == priority && !item.isDone()
+							&& Item.daysLeft(item.getEtaDate()) < 0)
+					.count(), perPriority[priority.ordinal()]);
+		int[] rows = table.rows(highOverdue);
+		assertEquals(ItemTable.count(highOverdue), rows.length);
+		for (int row : rows) {
+			assertEquals(items.get(row)
+					.getuName(), table.getuName(row));
+			assertEquals(Priority.HIGH, table.getPriority(row));
+			assertTrue(table.getEtaDay(row) < today && !table.isDone(row));
+		}
+		assertEquals(ItemTable.count(table.all()), ItemTable.count(ItemTable.or(table.done(),
+				ItemTable.andNot(table.all(), table.done()))));
+		assertArrayEquals(new long[16], table.withCategory("unknown"));
+	}
+
+	/**
+	 * Creates a table of {@code size} random rows with one category each.
+	 *
+	 * @param rowCategories filled with the category index of each row
+	 */
+	private static ItemTable createTable(int size, long seed, int today, int[] rowCategories) {
+		Random random = new Random(seed);
+		String[] uNames = new String[size];
+		int[] etaDays = new int[size];
+		byte[] priorities = new byte[size];
+		long[] done = new long[(size + 63) / 64];
+		long[][] categoryBitmaps = new long[CATEGORIES.length][(size + 63) / 64];
+		for (int row = 0; row < size; row++) {
+			etaDays[row] = today + random.nextInt(60) - 30;
+			priorities[row] = (byte) random.nextInt(Priority.values().length);
+			if (random.nextInt(4) == 0)
+				done[row >>> 6] |= 1L << row;
+			rowCategories[row] = random.nextInt(CATEGORIES.length);
+			categoryBitmaps[rowCategories[row]][row >>> 6] |= 1L << row;
+		}
+		return new ItemTable(uNames, etaDays, priorities, done, CATEGORIES, categoryBitmaps);
+	}
+
+	/**
+	 * Tables large enough to be processed in parallel chunks (and not a multiple
+	 * of a chunk) give the same counts as checking every row.
+	 */
+	@Test
+	void testLargeTable() {
+		int size = 200003;
+		int today = (int) LocalDate.now()
+				.toEpochDay();
+		int[] rowCategories = new int[size];
+		ItemTable table = createTable(size, 2, today, rowCategories);
+
+		long[] overdue = table.overdue(today);
+		Map<String, Long> perCategory = table.countByCategory(ItemTable.and(table.withPriority(Priority.HIGH), overdue));
+		long[] perPriority = table.countByPriority(overdue);
+
+		long[] expectedPerCategory = new long[CATEGORIES.length];
+		long[] expectedPerPriority = new long[Priority.values().length];
+		for (int row = 0; row < size; row++) {
+			if (table.isDone(row) || table.getEtaDay(row) >= today)
+				continue;
+			expectedPerPriority[table.getPriority(row)
+					.ordinal()]++;
+			if (table.getPriority(row) == Priority.HIGH)
+				expectedPerCategory[rowCategories[row]]++;
+		}
+		assertEquals(size, ItemTable.count(table.all()));
+		assertArrayEquals(expectedPerPriority, perPriority);
+		for (int c = 0; c < CATEGORIES.length; c++)
+			assertEquals(expectedPerCategory[c], (long) perCategory.get(CATEGORIES[c]));
+		assertEquals(ItemTable.count(overdue), table.rows(overdue).length);
+	}
+
+	/**
+	 * Reports the time of counting the HIGH overdue rows per category and all
+	 * overdue rows per priority: {@code ItemTableTest [<rows>]}.
+	 *
+	 * @param args {@code [<rows>]}
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		int today = (int) LocalDate.now()
+				.toEpochDay();
+		ItemTable table = createTable(size, 2, today, new int[size]);
+
+		Map<String, Long> perCategory = null;
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 5; run++) { // warm up
+			long start = System.nanoTime();
+			long[] overdue = table.overdue(today);
+			perCategory = table.countByCategory(ItemTable.and(table.withPriority(Priority.HIGH), overdue));
+			table.countByPriority(overdue);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.println(String.format("ItemTable: HIGH overdue per category of %d rows=%s in %.2fms", size,
+				perCategory, best / 1e6));
+	}
+
+}
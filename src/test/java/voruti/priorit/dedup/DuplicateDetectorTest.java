@@ -0,0 +1,153 @@
+package voruti.priorit.dedup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.Priority;
+import voruti.priorit.PrioritManager;
+
+/**
+ * @author voruti
+ *
+ */
+class DuplicateDetectorTest {
+
+	private static final String TEST_DIR = "testDedup";
+
+	private static final String TEXT = "The login page shows a blank screen after submitting the form "
+			+ "with valid credentials on the staging system.";
+
+	@AfterEach
+	void tearDown() throws Exception {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Files.walk(dir.toPath())
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	private static Item item(String uName, String title, String text) {
+		Item item = new Item();
+		item.setuName(uName);
+		item.setTitle(title);
+		item.setText(text);
+		return item;
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.dedup.DuplicateDetector#add(voruti.priorit.Item)}.
+	 */
+	@Test
+	void testAdd() {
+		DuplicateDetector detector = new DuplicateDetector();
+
+		List<String> d1 = detector.add(item("a", "Login broken", TEXT));
+		List<String> d2 = detector.add(item("b", "Login broken!", TEXT.toUpperCase() + " "));
+		List<String> d3 = detector.add(item("c", "Login broken", TEXT.replace("submitting", "submiting")));
+		List<String> d4 = detector.add(item("d", "Update dependencies", "Bump all libraries to their latest versions."));
+		List<String> d5 = detector.add(item("e", "", ""));
+
+		assertEquals(Collections.emptyList(), d1);
+		assertEquals(Arrays.asList("a"), d2);
+		assertEquals(Arrays.asList("a", "b"), d3);
+		assertEquals(Collections.emptyList(), d4);
+		assertEquals(Collections.emptyList(), d5);
+		assertEquals(4, detector.size());
+		assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), detector.getDuplicateGroups());
+
+		Item done = item("b", "Login broken!", TEXT);
+		done.setDone(true);
+		detector.add(done);
+
+		assertEquals(3, detector.size());
+		assertEquals(Arrays.asList("a", "c"), detector.getDuplicates(item("x", "Login broken", TEXT)));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.dedup.DuplicateDetector#follow(voruti.priorit.PrioritManager)}
+	 * and
+	 * {@link voruti.priorit.dedup.DuplicateDetector#merge(voruti.priorit.PrioritManager, voruti.priorit.Item, voruti.priorit.Item)}.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testFollowAndMerge() throws IOException, InterruptedException {
+		PrioritManager prioritManager = new PrioritManager(new File(TEST_DIR));
+		Item kept = item("kept", "Login broken", TEXT);
+		kept.setCategories(Arrays.asList("web"));
+		prioritManager.addItem(kept);
+
+		try (DuplicateDetector detector = new DuplicateDetector()) {
+			detector.follow(prioritManager);
+
+			Item duplicate = item("duplicate", "Login broken", TEXT);
+			duplicate.setCategories(Arrays.asList("imported"));
+			duplicate.setPriority(Priority.HIGH);
+			prioritManager.addItem(duplicate);
+			for (int i = 0; i < 500 && detector.size() < 2; i++)
+				Thread.sleep(10);
+
+			assertEquals(Arrays.asList(Arrays.asList("duplicate", "kept")), detector.getDuplicateGroups());
+
+			assertTrue(detector.merge(prioritManager, kept, duplicate));
+
+			assertTrue(detector.getDuplicateGroups()
+					.isEmpty());
+			List<Item> items = prioritManager.getAllItems();
+			assertEquals(kept, items.get(0));
+			assertEquals(Arrays.asList("imported", "web"), items.get(0)
+					.getCategories());
+			assertEquals(Priority.HIGH, items.get(0)
+					.getPriority());
+			assertTrue(items.get(1)
+					.isDone());
+			assertEquals(Arrays.asList("web"), kept.getCategories());
+			assertFalse(duplicate.isDone());
+		}
+	}
+
+	/**
+	 * A failed merge changes neither the {@link Item items} nor the index.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testFailedMerge() throws IOException {
+		PrioritManager prioritManager = new PrioritManager(new File(TEST_DIR));
+		Item kept = item("kept", "Login broken", TEXT);
+		prioritManager.addItem(kept);
+		Item duplicate = item("duplicate", "Login broken", TEXT);
+		prioritManager.addItem(duplicate);
+
+		try (DuplicateDetector detector = new DuplicateDetector()) {
+			detector.add(kept);
+			detector.add(duplicate);
+			prioritManager.close(); // saving fails
+
+			assertFalse(detector.merge(prioritManager, kept, duplicate));
+
+			assertEquals(Arrays.asList(Arrays.asList("duplicate", "kept")), detector.getDuplicateGroups());
+			assertFalse(duplicate.isDone());
+		}
+	}
+
+}
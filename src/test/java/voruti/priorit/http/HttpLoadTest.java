@@ -0,0 +1,201 @@
+package voruti.priorit.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.PrioritManager;
+
+/**
+ * Local load test of {@link PrioritHttpServer}: several clients request the
+ * endpoints for a fixed duration; throughput and latency percentiles are
+ * reported. The test suite only checks the concurrent behaviour; run
+ * {@link #main(String[])} for the timings:
+ * {@code HttpLoadTest <items> <clients> <seconds>}.
+ *
+ * @author voruti
+ */
+class HttpLoadTest {
+
+	private static final String TEST_DIR = "testHttpLoad";
+
+	private static final List<String> PATHS = Arrays.asList("/items/next", "/items/top?k=20",
+			"/items/search?q=.*7.*", "/items/category?name=none");
+
+	/**
+	 * Result of one run.
+	 */
+	static final class Result {
+
+		final long requests;
+		final long errors;
+		final double requestsPerSecond;
+		final double p50Millis;
+		final double p99Millis;
+
+		private Result(long requests, long errors, double requestsPerSecond, double p50Millis, double p99Millis) {
+			this.requests = requests;
+			this.errors = errors;
+			this.requestsPerSecond = requestsPerSecond;
+			this.p50Millis = p50Millis;
+			this.p99Millis = p99Millis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("requests=%d, errors=%d, req/s=%.1f, p50=%.2fms, p99=%.2fms", requests, errors,
+					requestsPerSecond, p50Millis, p99Millis);
+		}
+
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param items          the number of items in the list
+	 * @param clients        the number of concurrent clients
+	 * @param durationMillis the duration
+	 * @return the {@link Result}
+	 */
+	static Result run(int items, int clients, long durationMillis) throws Exception {
+		return run(items, clients, durationMillis, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Runs the load test until the duration is over or every client sent
+	 * {@code requestsPerClient} requests.
+	 *
+	 * @param serverCheck called with the server after the run (before it is
+	 *                    closed); may be {@code null}
+	 */
+	private static Result run(int items, int clients, long durationMillis, long requestsPerClient,
+			Consumer<PrioritHttpServer> serverCheck) throws Exception {
+		// avoid Nagle delays on the small responses (read once by the JDK server):
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		deleteDirectory();
+		PrioritManager prioritManager = new PrioritManager(new File(TEST_DIR));
+		for (int i = 0; i < items; i++)
+			prioritManager.addItem(new Item());
+
+		try (PrioritHttpServer server = new PrioritHttpServer(prioritManager, new InetSocketAddress("127.0.0.1", 0),
+				clients)) {
+			server.start();
+
+			AtomicLong errors = new AtomicLong();
+			long end = System.nanoTime() + durationMillis * 1000000L;
+			ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+			List<Future<List<Long>>> futures = new ArrayList<>();
+			for (int c = 0; c < clients; c++) {
+				int client = c;
+				futures.add(clientPool.submit(() -> {
+					List<Long> latencies = new ArrayList<>();
+					for (int i = client; latencies.size() < requestsPerClient && System.nanoTime() < end; i++) {
+						long start = System.nanoTime();
+						if (!request(server.getPort(), PATHS.get(i % PATHS.size())))
+							errors.incrementAndGet();
+						latencies.add(System.nanoTime() - start);
+					}
+					return latencies;
+				}));
+			}
+
+			List<Long> latencies = new ArrayList<>();
+			for (Future<List<Long>> future : futures)
+				latencies.addAll(future.get());
+			clientPool.shutdown();
+			latencies.sort(null);
+			if (serverCheck != null)
+				serverCheck.accept(server);
+
+			return new Result(latencies.size(), errors.get(), latencies.size() * 1000.0 / durationMillis,
+					percentile(latencies, 0.5), percentile(latencies, 0.99));
+		} finally {
+			deleteDirectory();
+		}
+	}
+
+	private static boolean request(int port, String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path)
+				.openConnection();
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			if (in != null)
+				while (in.read(new byte[4096]) > 0) {
+					// drain, so the connection can be reused
+				}
+		}
+		return status == 200;
+	}
+
+	private static double percentile(List<Long> sortedNanos, double percentile) {
+		if (sortedNanos.isEmpty())
+			return 0;
+		int index = (int) Math.min(sortedNanos.size() - 1, Math.ceil(percentile * sortedNanos.size()) - 1);
+		return sortedNanos.get(Math.max(0, index)) / 1e6;
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Path path = dir.toPath();
+			Files.walk(path)
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Concurrent clients get only successful responses, mostly from the cache.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testConcurrentClients() throws Exception {
+		int clients = 4;
+		int requestsPerClient = 100;
+
+		Result result = run(50, clients, 60000, requestsPerClient, server -> {
+			assertEquals(clients * requestsPerClient, server.getCacheHits() + server.getCacheMisses());
+			// at most every client computes every path once:
+			assertTrue(server.getCacheMisses() <= clients * PATHS.size());
+		});
+
+		assertEquals(clients * requestsPerClient, result.requests);
+		assertEquals(0, result.errors);
+	}
+
+	/**
+	 * @param args {@code <items> <clients> <seconds>}
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+		System.out.println("HttpLoadTest: " + run(items, clients, seconds * 1000));
+	}
+
+}
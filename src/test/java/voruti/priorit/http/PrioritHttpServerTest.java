@@ -0,0 +1,168 @@
+package voruti.priorit.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.PrioritManager;
+import voruti.priorit.Priority;
+
+/**
+ * @author voruti
+ *
+ */
+class PrioritHttpServerTest {
+
+	private static final String TEST_DIR = "testHttp";
+
+	private PrioritManager prioritManager;
+
+	private PrioritHttpServer server;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterAll
+	static void tearDownAfterClass() throws Exception {
+		deleteDirectory();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+		deleteDirectory();
+
+		prioritManager = new PrioritManager(new File(TEST_DIR));
+		server = new PrioritHttpServer(prioritManager, new InetSocketAddress("127.0.0.1", 0), 4);
+		server.start();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@AfterEach
+	void tearDown() throws Exception {
+		server.close();
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Path path = dir.toPath();
+			Files.walk(path)
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Sends a GET request.
+	 *
+	 * @return {status, etag, body}
+	 */
+	private String[] get(String pathAndQuery, String ifNoneMatch) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + server.getPort() + pathAndQuery).openConnection();
+		if (ifNoneMatch != null)
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
+		int status = connection.getResponseCode();
+		InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		if (inputStream != null)
+			try (InputStream in = inputStream) {
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) > 0)
+					body.write(buffer, 0, read);
+			}
+		return new String[] { String.valueOf(status), connection.getHeaderField("ETag"),
+				new String(body.toByteArray(), StandardCharsets.UTF_8) };
+	}
+
+	/**
+	 * Test of the endpoints.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testEndpoints() throws IOException {
+		assertEquals("404", get("/items/next", null)[0]);
+
+		Item i1 = new Item();
+		i1.setTitle("first");
+		i1.setPriority(Priority.VERY_HIGH);
+		i1.setCategories(Arrays.asList("work"));
+		Item i2 = new Item();
+		i2.setTitle("second");
+		prioritManager.addItem(i1);
+		prioritManager.addItem(i2);
+
+		String[] next = get("/items/next", null);
+		String[] top = get("/items/top?k=1", null);
+		String[] search = get("/items/search?q=sec.*", null);
+		String[] category = get("/items/category?name=work", null);
+
+		assertEquals("200", next[0]);
+		assertTrue(next[2].contains("\"title\":\"first\""));
+		assertTrue(top[2].startsWith("[{") && top[2].contains("first") && !top[2].contains("second"));
+		assertTrue(search[2].contains("second") && !search[2].contains("first"));
+		assertTrue(category[2].contains("first") && !category[2].contains("second"));
+		assertEquals("400", get("/items/top?k=x", null)[0]);
+		assertEquals("400", get("/items/search?q=(", null)[0]);
+		assertEquals("404", get("/items/unknown", null)[0]);
+	}
+
+	/**
+	 * Test of the response cache and ETags.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	void testCache() throws IOException {
+		prioritManager.addItem(new Item());
+
+		String[] r1 = get("/items/top?k=5", null);
+		String[] r2 = get("/items/top?k=5", null);
+		String[] r3 = get("/items/top?k=5", r1[1]);
+
+		assertNotNull(r1[1]);
+		assertTrue(r1[1].contains("-d" + LocalDate.now()
+				.toEpochDay() + "-"));
+		assertEquals(r1[1], r2[1]);
+		assertEquals(r1[2], r2[2]);
+		assertEquals("304", r3[0]);
+		assertEquals(1, server.getCacheMisses());
+		assertEquals(2, server.getCacheHits());
+
+		prioritManager.addItem(new Item());
+		String[] r4 = get("/items/top?k=5", r1[1]);
+
+		assertEquals("200", r4[0]);
+		assertTrue(!r1[1].equals(r4[1]));
+		assertEquals(2, server.getCacheMisses());
+	}
+
+}
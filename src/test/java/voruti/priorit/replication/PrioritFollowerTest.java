@@ -0,0 +1,188 @@
+package voruti.priorit.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.Priority;
+import voruti.priorit.PrioritManager;
+
+/**
+ * @author voruti
+ *
+ */
+class PrioritFollowerTest {
+
+	private static final String TEST_DIR = "testReplication";
+
+	private PrioritManager leader;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		deleteDirectory();
+		leader = new PrioritManager(new File(TEST_DIR));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		deleteDirectory();
+	}
+
+	private static void deleteDirectory() throws IOException {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			Files.walk(dir.toPath())
+					.sorted(Comparator.reverseOrder())
+					.map(Path::toFile)
+					.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Waits until {@code writer} wrote {@code sequence} records.
+	 */
+	private static void awaitSequence(ChangeLogWriter writer, long sequence) throws InterruptedException {
+		for (int i = 0; i < 500 && writer.getSequence() < sequence; i++)
+			Thread.sleep(10);
+		assertEquals(sequence, writer.getSequence());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.replication.PrioritFollower#poll()}.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testPoll() throws Exception {
+		Item i1 = new Item();
+		leader.addItem(i1);
+
+		try (ChangeLogWriter writer = new ChangeLogWriter(leader);
+				PrioritFollower follower = new PrioritFollower(new File(TEST_DIR))) {
+			assertEquals(1, follower.getAppliedSequence());
+			assertEquals(i1, follower.getNextItem());
+			assertEquals(0, follower.getLagBytes());
+
+			Item i2 = new Item();
+			i2.setPriority(Priority.VERY_HIGH);
+			leader.addItem(i2);
+			i1.setTitle("Changed");
+			leader.updateItem(i1);
+			awaitSequence(writer, 3);
+
+			assertTrue(follower.getLagBytes() > 0);
+			assertEquals(1, follower.getAllItems()
+					.size());
+
+			assertEquals(2, follower.poll());
+
+			assertEquals(0, follower.getLagBytes());
+			assertEquals(0, follower.getLagMillis());
+			assertEquals(leader.getAllItems(), follower.getAllItems());
+			assertEquals(i2, follower.getNextItem());
+			assertEquals("Changed", follower.searchItem("Changed")
+					.get(0)
+					.getTitle());
+		}
+	}
+
+	/**
+	 * A new {@link ChangeLogWriter} starts a new session, which replaces the
+	 * {@link Item items} of the follower.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testNewSession() throws Exception {
+		try (PrioritFollower follower = new PrioritFollower(new File(TEST_DIR))) {
+			assertNull(follower.getNextItem());
+
+			try (ChangeLogWriter writer = new ChangeLogWriter(leader)) {
+				for (int i = 0; i < 5; i++)
+					leader.addItem(new Item());
+				awaitSequence(writer, 5);
+			}
+			assertEquals(5, follower.poll());
+
+			Item item = new Item();
+			leader.addItem(item);
+			try (ChangeLogWriter writer = new ChangeLogWriter(leader)) {
+				assertEquals(6, writer.getSequence());
+				assertEquals(6, follower.poll());
+				assertEquals(6, follower.getAllItems()
+						.size());
+				assertEquals(6, follower.getAppliedSequence());
+			}
+		}
+	}
+
+	/**
+	 * Test method for background polling.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testBackgroundPolling() throws Exception {
+		try (ChangeLogWriter writer = new ChangeLogWriter(leader);
+				PrioritFollower follower = new PrioritFollower(new File(TEST_DIR), 10)) {
+			Item item = new Item();
+			leader.addItem(item);
+			awaitSequence(writer, 1);
+
+			for (int i = 0; i < 500 && follower.getNextItem() == null; i++)
+				Thread.sleep(10);
+
+			assertEquals(item, follower.getNextItem());
+		}
+	}
+
+	/**
+	 * The change log is compacted to a new session, which the follower reads
+	 * instead of the old one.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testCompaction() throws Exception {
+		for (int i = 0; i < 5; i++)
+			leader.addItem(new Item());
+		Item item = leader.getNextItem();
+		File logFile = ChangeLog.getFile(new File(TEST_DIR));
+
+		try (ChangeLogWriter writer = new ChangeLogWriter(leader, 1);
+				PrioritFollower follower = new PrioritFollower(new File(TEST_DIR))) {
+			long snapshotLength = logFile.length();
+			assertEquals(5, writer.getSequence());
+
+			for (int i = 1; i <= 100; i++) {
+				item.setTitle("Title " + i);
+				assertTrue(leader.updateItem(item));
+			}
+			for (int i = 0; i < 500 && follower.searchItem("Title 100")
+					.isEmpty(); i++) {
+				follower.poll();
+				Thread.sleep(10);
+			}
+
+			assertTrue(logFile.length() < 3 * snapshotLength,
+					() -> String.format("length=%d snapshotLength=%d", logFile.length(), snapshotLength));
+			assertTrue(writer.getSequence() < 100);
+			assertEquals(leader.getAllItems(), follower.getAllItems());
+			assertEquals("Title 100", follower.searchItem("Title 100")
+					.get(0)
+					.getTitle());
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package voruti.priorit.score;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static voruti.priorit.TestItems.TODAY;
+import static voruti.priorit.TestItems.createItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import voruti.priorit.Item;
+import voruti.priorit.PrioritManager;
+import voruti.priorit.Priority;
+
+/**
+ * @author voruti
+ *
+ */
+class ScoreEngineTest {
+
+	private static final String TEST_DIR = "testScoreEngine";
+
+	@AfterEach
+	void tearDown() throws Exception {
+		File dir = new File(TEST_DIR);
+		if (dir.exists()) {
+			try (Stream<Path> paths = Files.walk(dir.toPath())) {
+				paths.sorted(Comparator.reverseOrder())
+						.map(Path::toFile)
+						.forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.score.LinearScoring}.
+	 */
+	@Test
+	void testLinearScoring() {
+		ScoreEngine engine = new ScoreEngine(new LinearScoring());
+		Item future = createItem("future", Priority.HIGH, 10);
+		Item overdueHigh = createItem("overduehigh", Priority.VERY_HIGH, -3);
+		Item overdueLow = createItem("overduelow", Priority.VERY_LOW, -3);
+		engine.putAll(Arrays.asList(future, overdueHigh, overdueLow));
+
+		engine.refresh(TODAY);
+
+		assertEquals(Item.calculateValue(future), engine.getScore("future"));
+		assertEquals(-15, engine.getScore("overduehigh"));
+		assertEquals(-3, engine.getScore("overduelow"));
+		assertEquals(Arrays.asList("overduehigh", "overduelow", "future"), engine.rank());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.score.ExponentialScoring}.
+	 */
+	@Test
+	void testExponentialScoring() {
+		ScoreEngine engine = new ScoreEngine(new ExponentialScoring(7));
+		engine.put(createItem("a", Priority.MED, 7));
+		engine.put(createItem("b", Priority.MED, 0));
+		engine.put(createItem("c", Priority.MED, -7));
+
+		engine.refresh(TODAY);
+
+		assertEquals(-3, engine.getScore("b"), 1e-9);
+		assertEquals(-1.5, engine.getScore("a"), 1e-9);
+		assertEquals(-6, engine.getScore("c"), 1e-9);
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.score.CategoryBoostScoring}.
+	 */
+	@Test
+	void testCategoryBoostScoring() {
+		ScoreEngine engine = new ScoreEngine(
+				new CategoryBoostScoring(new LinearScoring(), Collections.singletonMap("work", 100.0)));
+		Item work = createItem("work", Priority.LOW, 10);
+		work.setCategories(Arrays.asList("work", "other"));
+		engine.put(work);
+		engine.put(createItem("plain", Priority.LOW, 1));
+
+		engine.refresh(TODAY);
+
+		assertEquals(-60, engine.getScore("work"));
+		assertEquals(4, engine.getScore("plain"));
+		assertEquals(Arrays.asList("work", "plain"), engine.rank());
+	}
+
+	/**
+	 * Test method for {@link voruti.priorit.score.ScoreEngine#refresh(int)}.
+	 */
+	@Test
+	void testRefresh() {
+		ScoreEngine engine = new ScoreEngine(new LinearScoring());
+		for (int i = 0; i < 100; i++)
+			engine.put(createItem("item" + i, Priority.MED, i));
+
+		assertEquals(100, engine.refresh(TODAY));
+		assertEquals(0, engine.refresh(TODAY));
+
+		engine.put(createItem("item5", Priority.MED, 5)); // unchanged
+		engine.put(createItem("item6", Priority.HIGH, 6));
+		assertEquals(1, engine.refresh(TODAY));
+		assertEquals(12, engine.getScore("item6"));
+
+		// day rollover:
+		assertEquals(100, engine.refresh(TODAY + 1));
+		assertEquals(10, engine.getScore("item6"));
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.score.ScoreEngine#remove(java.lang.String)}.
+	 */
+	@Test
+	void testRemove() {
+		ScoreEngine engine = new ScoreEngine(new LinearScoring());
+		engine.put(createItem("a", Priority.MED, 1));
+		engine.put(createItem("b", Priority.MED, 2));
+		engine.put(createItem("c", Priority.MED, 3));
+		engine.refresh(TODAY);
+
+		assertTrue(engine.remove("a"));
+		assertFalse(engine.remove("a"));
+
+		assertEquals(2, engine.size());
+		assertEquals(9, engine.getScore("c"));
+		assertEquals(Arrays.asList("b", "c"), engine.rank());
+	}
+
+	/**
+	 * Test method for
+	 * {@link voruti.priorit.score.ScoreEngine#follow(voruti.priorit.PrioritManager)}.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testFollow() throws IOException, InterruptedException {
+		PrioritManager prioritManager = new PrioritManager(new File(TEST_DIR));
+		prioritManager.addItem(createItem("a", Priority.MED, 1));
+		prioritManager.addItem(createItem("b", Priority.MED, 2));
+
+		try (ScoreEngine engine = new ScoreEngine(new LinearScoring())) {
+			engine.follow(prioritManager);
+			assertEquals(Arrays.asList("a", "b"), engine.rank());
+
+			prioritManager.addItem(createItem("c", Priority.MED, 3));
+			prioritManager.updateItem(createItem("b", Priority.VERY_HIGH, -1));
+			for (int i = 0; i < 500 && !(engine.size() == 3 && engine.getScore("b") < 0); i++) {
+				Thread.sleep(10);
+				engine.refresh();
+			}
+
+			assertEquals(Arrays.asList("b", "a", "c"), engine.rank());
+			assertEquals(prioritManager.getAllItems()
+					.stream()
+					.map(Item::getuName)
+					.collect(Collectors.toList()), engine.rank());
+		}
+	}
+
+}